@@ -0,0 +1,72 @@
+package com.creemama.swingconsole;
+
+import java.awt.EventQueue;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of console output on a headless
+ * {@link SwingConsolePane}.
+ * <p>
+ * {@link #write()} measures the writing thread alone: writes into the output
+ * stream, which block only while the EDT falls behind. {@link #append()}
+ * measures lines all the way into the document: it writes a batch of lines
+ * and flushes the output stream, which waits for the EDT to insert them rather
+ * than for the flush timer, trimming the scrollback as it goes.
+ * </p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1)
+public class ConsoleOutputBenchmark {
+	private static final int LINES_PER_APPEND = 100;
+
+	private static final byte[] LINE = UTF8Coder.encodeUTF8("The quick brown fox jumps over the lazy dog.\n");
+
+	private OutputStream out;
+
+	private SwingConsolePane pane;
+
+	@Benchmark
+	@OperationsPerInvocation(LINES_PER_APPEND)
+	public void append() throws IOException {
+		for (int i = 0; i < LINES_PER_APPEND; i++)
+			out.write(LINE);
+		out.flush();
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() throws InterruptedException, InvocationTargetException {
+		EventQueue.invokeAndWait(() -> pane = new SwingConsolePane(null));
+		out = pane.getOutputStream();
+	}
+
+	@Setup(Level.Iteration)
+	public void setUpIteration() throws IOException {
+		// Start each iteration without the output of the previous one pending.
+		out.flush();
+	}
+
+	@Benchmark
+	public void write() throws IOException {
+		out.write(LINE);
+	}
+}
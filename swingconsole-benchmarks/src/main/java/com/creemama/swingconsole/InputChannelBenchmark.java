@@ -0,0 +1,80 @@
+package com.creemama.swingconsole;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the latency of handing a line from the event dispatch thread to the
+ * interpreter thread through each {@link TextAreaReadline.InputMode}.
+ * <p>
+ * Each operation is a round trip: the benchmark thread sends a line, an echo
+ * thread reads it and sends it back, and the benchmark thread reads the reply.
+ * Run with {@code -prof gc} to compare allocation rates.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Threads(1)
+@Warmup(iterations = 5, time = 1)
+public class InputChannelBenchmark {
+	private static final String LINE = "puts 'Hello, World!'\n";
+
+	private Thread echo;
+
+	@Param({ "JOIN", "LOCK_FREE" })
+	public TextAreaReadline.InputMode mode;
+
+	private final byte[] readBuffer = new byte[256];
+
+	private ConsoleInput reply;
+
+	private ConsoleInput request;
+
+	@Benchmark
+	public int readBytes() {
+		request.sendLine(LINE);
+		return reply.read(readBuffer, 0, readBuffer.length);
+	}
+
+	@Benchmark
+	public String readLine() {
+		request.sendLine(LINE);
+		return reply.readLine();
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		request = ConsoleInput.create(mode);
+		reply = ConsoleInput.create(mode);
+		echo = new Thread(() -> {
+			for (String line; !(line = request.readLine()).isEmpty();)
+				reply.sendLine(line);
+		}, "echo");
+		echo.setDaemon(true);
+		echo.start();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws InterruptedException {
+		request.shutdown();
+		reply.shutdown();
+		echo.join();
+	}
+}
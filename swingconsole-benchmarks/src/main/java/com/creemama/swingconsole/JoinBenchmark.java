@@ -0,0 +1,69 @@
+package com.creemama.swingconsole;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link Join} round trips on a single thread: an asynchronous send
+ * matching a {@link Join.FastReaction} and a synchronous call matching a
+ * {@link Join.SyncReaction}, the two kinds of reaction the console's input
+ * channel uses.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+public class JoinBenchmark {
+	private enum Channel {
+		GET, PING, TOKEN, VALUE
+	}
+
+	private static final Join.Spec SPEC = new Join.Spec() {
+		{
+			addReaction(new Join.FastReaction(Channel.PING, Channel.TOKEN) {
+				@Override
+				public void react(Join join, Object[] args) {
+					join.send(Channel.TOKEN, args[1]);
+				}
+			});
+			addReaction(new Join.SyncReaction(Channel.GET, Channel.VALUE) {
+				@Override
+				public Object react(Join join, Object[] args) {
+					join.send(Channel.VALUE, args[1]);
+					return args[1];
+				}
+			});
+		}
+	};
+
+	private Join join;
+
+	@Benchmark
+	public Object call() {
+		return join.call(Channel.GET, null);
+	}
+
+	@Benchmark
+	public void send() {
+		join.send(Channel.PING, null);
+	}
+
+	@Setup
+	public void setUp() {
+		join = SPEC.createJoin();
+		join.send(Channel.TOKEN, Boolean.TRUE);
+		join.send(Channel.VALUE, Boolean.TRUE);
+	}
+}
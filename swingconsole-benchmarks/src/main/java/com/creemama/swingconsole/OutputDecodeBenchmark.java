@@ -0,0 +1,76 @@
+package com.creemama.swingconsole;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the throughput of decoding console output with
+ * {@link UTF8Coder#decodeUTF8(byte[], int, int)} against
+ * {@link UTF8StreamDecoder} for ASCII-heavy and CJK-heavy text, with chunks
+ * below and above {@code UTF8Coder.CHAR_THRESHOLD}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+public class OutputDecodeBenchmark {
+	public enum Text {
+		ASCII("The quick brown fox jumps over the lazy dog. 0123456789\n"),
+		CJK("我能吞下玻璃而不伤身体。私はガラスを食べられます。\n");
+
+		final String sample;
+
+		Text(String sample) {
+			this.sample = sample;
+		}
+	}
+
+	private byte[] bytes;
+
+	private int decoded;
+
+	private UTF8StreamDecoder decoder;
+
+	@Param({ "256", "4096" })
+	public int length;
+
+	@Param
+	public Text text;
+
+	@Setup
+	public void setUp() {
+		StringBuilder builder = new StringBuilder();
+		while (UTF8Coder.encodeUTF8(builder).length < length)
+			builder.append(text.sample);
+		byte[] encoded = UTF8Coder.encodeUTF8(builder);
+		bytes = new byte[length];
+		System.arraycopy(encoded, 0, bytes, 0, length);
+		decoder = new UTF8StreamDecoder((chars, offset, length, style) -> decoded += length);
+	}
+
+	@Benchmark
+	public int streamDecoder() throws InterruptedIOException {
+		decoded = 0;
+		decoder.write(bytes, 0, bytes.length, null);
+		return decoded;
+	}
+
+	@Benchmark
+	public String utf8Coder() {
+		return UTF8Coder.decodeUTF8(bytes, 0, bytes.length);
+	}
+}
@@ -0,0 +1,55 @@
+package com.creemama.swingconsole;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link UTF8Coder#encodeUTF8(String)} and
+ * {@link UTF8Coder#decodeUTF8(byte[])} on both sides of
+ * {@code UTF8Coder.CHAR_THRESHOLD} (1024), where the coder switches from its
+ * cached buffers to {@link java.nio.charset.Charset}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+public class UTF8CoderBenchmark {
+	private byte[] bytes;
+
+	@Param({ "64", "1024", "1025", "8192" })
+	public int length;
+
+	private String string;
+
+	@Benchmark
+	public String decode() {
+		return UTF8Coder.decodeUTF8(bytes);
+	}
+
+	@Benchmark
+	public byte[] encode() {
+		return UTF8Coder.encodeUTF8(string);
+	}
+
+	@Setup
+	public void setUp() {
+		StringBuilder builder = new StringBuilder(length);
+		for (int i = 0; i < length; i++)
+			builder.append((char) ('a' + i % 26));
+		string = builder.toString();
+		bytes = UTF8Coder.encodeUTF8(string);
+	}
+}
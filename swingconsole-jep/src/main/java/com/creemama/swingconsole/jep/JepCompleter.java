@@ -1,8 +1,14 @@
 package com.creemama.swingconsole.jep;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 import javax.script.ScriptException;
 
@@ -22,6 +28,64 @@ class JepCompleter implements jline.console.completer.Completer, org.jline.reade
 		return Optional.empty();
 	}
 
+	/**
+	 * The number of candidates to ask the completer for at a time
+	 */
+	private static final int CANDIDATES_PER_BATCH = 32;
+
+	/**
+	 * The maximum number of words whose candidates to cache
+	 */
+	private static final int CACHE_SIZE = 64;
+
+	/**
+	 * The Python function returning one candidate for a word, as the completer
+	 * does
+	 */
+	private static final String COMPLETE_FUNCTION = "_swingconsole_complete";
+
+	private static final String COMPLETE_FUNCTION_DEF = "def " + COMPLETE_FUNCTION + "(text, state):\n" //
+			+ "    return _swingconsole_completer(text, state)\n";
+
+	/**
+	 * The completer of this engine's namespace. Every interpreter in the process
+	 * shares the {@code readline} module, so a completer set on it would complete
+	 * the names of whichever engine set it last, such as one warming in a
+	 * {@link JepEnginePool}.
+	 */
+	private static final String COMPLETER_DEF = "_swingconsole_completer = rlcompleter.Completer(globals()).complete";
+
+	/**
+	 * The Python function returning every candidate for a word in one call
+	 */
+	private static final String COMPLETIONS_FUNCTION = "_swingconsole_completions";
+
+	private static final String COMPLETIONS_FUNCTION_DEF = "def " + COMPLETIONS_FUNCTION + "(text):\n" //
+			+ "    complete = _swingconsole_completer\n" //
+			+ "    candidates = []\n" //
+			+ "    while True:\n" //
+			+ "        candidate = complete(text, len(candidates))\n" //
+			+ "        if candidate is None:\n" //
+			+ "            return candidates\n" //
+			+ "        candidates.append(candidate)\n";
+
+	/**
+	 * The candidates of recently completed words, valid while the engine's
+	 * modification count is {@link #cacheModificationCount}; guarded by this
+	 */
+	final private Map<String, List<String>> cache = new LinkedHashMap<String, List<String>>(16, 0.75f, true) {
+		final private static long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, List<String>> eldest) {
+			return size() > CACHE_SIZE;
+		}
+	};
+
+	private long cacheModificationCount = -1;
+
+	private boolean completionsFunctionDefined;
+
 	final private JepEngine engine;
 
 	private JepCompleter(JepEngine engine) {
@@ -36,21 +100,82 @@ class JepCompleter implements jline.console.completer.Completer, org.jline.reade
 	}
 
 	private void complete(List<CharSequence> candidates, int cursor, String word) {
+		candidates.addAll(getCandidates(word));
+	}
+
+	/**
+	 * Returns the candidates for a word, or {@code null} if the completer failed
+	 * or if interrupted while waiting for the interpreter, in which case the
+	 * thread stays interrupted.
+	 */
+	private List<String> fetchCandidates(String word) {
+		if (completionsFunctionDefined) {
+			try {
+				Object result = engine.queryAsync(COMPLETIONS_FUNCTION, word).get();
+				if (result instanceof List) {
+					List<String> candidates = new ArrayList<>(((List<?>) result).size());
+					for (Object candidate : (List<?>) result)
+						candidates.add(candidate.toString());
+					return candidates;
+				}
+			} catch (ExecutionException e) {
+				// Fall back to asking for the candidates in batches.
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return null;
+			}
+		}
+		List<String> candidates = new ArrayList<>();
+		return fetchCandidates(candidates, word) ? candidates : null;
+	}
+
+	private boolean fetchCandidates(List<String> candidates, String word) {
+		List<CompletableFuture<Object>> batch = new ArrayList<>(CANDIDATES_PER_BATCH);
 		try {
-			int i = 0;
-			while (true) {
-				Object result = engine
-						.eval("readline.get_completer()(\"" + word.replaceAll("\"", "\\\"") + "\", " + i + ")");
-				if (result == null)
-					return;
-				candidates.add(result.toString());
-				i++;
+			// Queue calls for a batch of candidates at a time so that each batch costs one
+			// hand-off to the interpreter thread instead of one per candidate. Queries,
+			// unlike evaluations and other calls, leave the engine's modification count
+			// and so the cache alone.
+			for (int i = 0;; i += CANDIDATES_PER_BATCH) {
+				batch.clear();
+				for (int j = i; j < i + CANDIDATES_PER_BATCH; j++)
+					batch.add(engine.queryAsync(COMPLETE_FUNCTION, word, j));
+				for (CompletableFuture<Object> future : batch) {
+					Object result = future.get();
+					if (result == null)
+						return true;
+					candidates.add(result.toString());
+				}
 			}
-		} catch (ScriptException e) {
-			return;
+		} catch (ExecutionException e) {
+			// Offer no candidates rather than the ones before the failure.
+			return false;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
 		}
 	}
 
+	private synchronized List<String> getCandidates(String word) {
+		// Read the count before fetching so that a change made while fetching
+		// invalidates the result.
+		long modificationCount = engine.getModificationCount();
+		if (modificationCount != cacheModificationCount) {
+			cache.clear();
+			cacheModificationCount = modificationCount;
+		}
+		List<String> candidates = cache.get(word);
+		if (candidates == null) {
+			candidates = fetchCandidates(word);
+			if (candidates == null)
+				// Failed or cancelled; do not cache what was not fetched.
+				return Collections.emptyList();
+			candidates = Collections.unmodifiableList(candidates);
+			cache.put(word, candidates);
+		}
+		return candidates;
+	}
+
 	@Override
 	public int complete(String buffer, int cursor, List<CharSequence> candidates) {
 		ParsedLine line = new DefaultParser().parse(buffer, cursor);
@@ -63,20 +188,25 @@ class JepCompleter implements jline.console.completer.Completer, org.jline.reade
 			// See https://github.com/ninia/jep/issues/235 for a discussion about readline.
 			// Compare this with
 			// https://github.com/ninia/jep/blob/master/src/main/python/jep/console.py.
-			engine.eval("import readline");
+			engine.evalOnce("import readline");
 		} catch (ScriptException readlineException) {
 			try {
-				engine.eval("import pyreadline as readline");
+				engine.evalOnce("import pyreadline as readline");
 			} catch (ScriptException pyreadlineException) {
 				return false;
 			}
 		}
 		try {
-			engine.eval("import rlcompleter");
-			engine.eval("readline.set_completer(rlcompleter.Completer(locals()).complete)");
-		} catch (ScriptException e) {
+			engine.evalBatchOnce(Arrays.asList("import rlcompleter", COMPLETER_DEF, COMPLETE_FUNCTION_DEF)).get();
+		} catch (ExecutionException | InterruptedException e) {
 			return false;
 		}
+		try {
+			engine.evalOnce(COMPLETIONS_FUNCTION_DEF);
+			completionsFunctionDefined = true;
+		} catch (ScriptException e) {
+			// Fall back to asking for the candidates in batches.
+		}
 		return true;
 	}
 }
@@ -1,12 +1,16 @@
 package com.creemama.swingconsole.jep;
 
-import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.io.Writer;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import javax.script.ScriptException;
@@ -18,9 +22,12 @@ import org.jline.reader.UserInterruptException;
 
 import com.creemama.swingconsole.ConsoleConfig;
 import com.creemama.swingconsole.ConsoleConfig.EvalFileStartupCommand;
+import com.creemama.swingconsole.ConsoleConfig.MapFileStartupCommand;
 import com.creemama.swingconsole.ConsoleConfig.PutStartupCommand;
 import com.creemama.swingconsole.ConsoleConfig.StartupCommand;
 import com.creemama.swingconsole.ConsoleConfig.StartupCommandVisitor;
+import com.creemama.swingconsole.ConsoleMetrics;
+import com.creemama.swingconsole.ConsoleMetrics.Phase;
 
 /**
  * A read-eval-print loop (REPL), an interactive console, for
@@ -30,6 +37,8 @@ public class JepConsole {
 	interface JepConsoleRunModel {
 		Optional<String> getBanner();
 
+		Optional<ConsoleMetrics> getMetrics();
+
 		Writer getWriter();
 
 		String readLine(String prompt);
@@ -42,10 +51,13 @@ public class JepConsole {
 	private static class JepConsoleRunModelImpl implements JepConsoleRunModel {
 		private final String banner;
 
+		private final ConsoleMetrics metrics;
+
 		private final LineReader reader;
 
-		JepConsoleRunModelImpl(String banner, LineReader reader) {
+		JepConsoleRunModelImpl(String banner, ConsoleMetrics metrics, LineReader reader) {
 			this.banner = banner;
+			this.metrics = metrics;
 			this.reader = reader;
 		}
 
@@ -54,6 +66,11 @@ public class JepConsole {
 			return Optional.ofNullable(banner);
 		}
 
+		@Override
+		public Optional<ConsoleMetrics> getMetrics() {
+			return Optional.ofNullable(metrics);
+		}
+
 		@Override
 		public Writer getWriter() {
 			return reader.getTerminal().writer();
@@ -84,8 +101,8 @@ public class JepConsole {
 		if (newBanner.contains("{{VERSION}}")) {
 			String version;
 			try {
-				engine.eval("import jep");
-				Object versionObj = engine.eval("jep.__VERSION__");
+				engine.evalOnce("import jep");
+				Object versionObj = engine.evalOnce("jep.__VERSION__");
 				version = versionObj == null ? "?" : versionObj.toString();
 			} catch (ScriptException e) {
 				version = "?";
@@ -95,8 +112,8 @@ public class JepConsole {
 		if (newBanner.contains("{{PYTHON_VERSION}}")) {
 			String version;
 			try {
-				engine.eval("from platform import python_version");
-				Object versionObj = engine.eval("python_version()");
+				engine.evalOnce("from platform import python_version");
+				Object versionObj = engine.evalOnce("python_version()");
 				version = versionObj == null ? "?" : versionObj.toString();
 			} catch (ScriptException e) {
 				version = "?";
@@ -106,94 +123,161 @@ public class JepConsole {
 		return newBanner;
 	}
 
+	/**
+	 * The Python function running a startup script from the code it compiled
+	 * earlier if the file has not changed since, and then flushing what the
+	 * script printed so that it comes before the banner
+	 */
+	private static final String RUN_FILE_FUNCTION = "_swingconsole_run_file";
+
+	/**
+	 * Because Jep's shared interpreters share {@code sys.modules}, every console
+	 * in the JVM shares the compiled code kept in it.
+	 */
+	private static final String RUN_FILE_FUNCTION_DEF = "def " + RUN_FILE_FUNCTION + "(path):\n" //
+			+ "    import os, sys, types\n" //
+			+ "    cache = sys.modules.get('_swingconsole_code_cache')\n" //
+			+ "    if cache is None:\n" //
+			+ "        cache = types.ModuleType('_swingconsole_code_cache')\n" //
+			+ "        cache.codes = {}\n" //
+			+ "        cache = sys.modules.setdefault('_swingconsole_code_cache', cache)\n" //
+			+ "    stat = os.stat(path)\n" //
+			+ "    key = (path, stat.st_mtime_ns, stat.st_size)\n" //
+			+ "    code = cache.codes.get(key)\n" //
+			+ "    if code is None:\n" //
+			+ "        with open(path, 'rb') as f:\n" //
+			+ "            code = compile(f.read(), path, 'exec')\n" //
+			+ "        for old in [k for k in cache.codes if k[0] == path]:\n" //
+			+ "            del cache.codes[old]\n" //
+			+ "        cache.codes[key] = code\n" //
+			+ "    try:\n" //
+			+ "        exec(code, globals())\n" //
+			+ "    finally:\n" //
+			+ "        for stream in (sys.stdout, sys.stderr):\n" //
+			+ "            stream.flush()\n";
+
 	private volatile boolean runCalled = false;
 
 	private boolean jepeval(JepEngine engine, List<String> evalLines, String line, Writer writer) throws IOException {
-		// Compare this method with a method of the same name at
-		// https://github.com/ninia/jep/blob/master/src/main/python/jep/console.py.
-		if (line.isEmpty()) {
-			if (!evalLines.isEmpty()) {
-				String code = evalLines.stream().collect(Collectors.joining("\n"));
-				evalLines.clear();
-				String output;
-				try {
-					Object result = engine.eval(code);
-					output = result == null ? null : result.toString();
-				} catch (ScriptException e) {
-					output = e.getMessage();
-				}
-				if (output != null) {
-					writer.write(output);
-					writer.write("\n");
-					writer.flush();
-				}
-			}
+		// Compare this method with InteractiveConsole.push at
+		// https://github.com/python/cpython/blob/master/Lib/code.py.
+		if (line.isEmpty() && evalLines.isEmpty())
 			return true;
-		} else if (evalLines.isEmpty()) {
-			String output;
-			try {
-				Object result = engine.eval(line);
-				output = result == null ? null : result.toString();
-			} catch (ScriptException e) {
-				output = e.getMessage();
-				if (output.contains("<class 'SyntaxError'>")) {
-					evalLines.add(line);
-					return false;
-				}
-			}
-			if (output != null) {
-				writer.write(output);
+		evalLines.add(line);
+		String output;
+		try {
+			// Compile the input once; the interpreter tells incomplete input apart
+			// without running it.
+			output = engine.evalInteractive(evalLines.stream().collect(Collectors.joining("\n")));
+			if (output == null)
+				return false;
+		} catch (ScriptException e) {
+			output = e.getMessage();
+		}
+		evalLines.clear();
+		if (!output.isEmpty()) {
+			writer.write(output);
+			if (!output.endsWith("\n"))
 				writer.write("\n");
-				writer.flush();
-			}
-			return true;
-		} else {
-			evalLines.add(line);
-			return false;
 		}
+		writer.flush();
+		return true;
 	}
 
 	public void run(ConsoleConfig config) {
+		long start = System.nanoTime();
 		JepEngine engine = new JepEngine();
-		LineReader reader = LineReaderBuilder.builder().completer(JepCompleter.create(engine).orElse(null))
+		JepCompleter completer = JepCompleter.create(engine).orElse(null);
+		config.getMetrics().ifPresent(metrics -> metrics.record(Phase.CREATE_INTERPRETER, null, start));
+		LineReader reader = LineReaderBuilder.builder().completer(completer)
 				.option(LineReader.Option.HISTORY_IGNORE_SPACE, false)
 				.option(LineReader.Option.HISTORY_REDUCE_BLANKS, false)
 				.option(LineReader.Option.HISTORY_TIMESTAMPED, false)
 				.variable(LineReader.HISTORY_FILE, config.getHistoryFile().orElse(null)).build();
-		JepConsoleRunModelImpl runModel = new JepConsoleRunModelImpl(config.getBanner().orElse(null), reader);
+		JepConsoleRunModelImpl runModel = new JepConsoleRunModelImpl(config.getBanner().orElse(null),
+				config.getMetrics().orElse(null), reader);
 		run(engine, runModel, config.getStartupCommands());
 	}
 
+	/**
+	 * Runs the startup commands in order, stopping at the first one that fails,
+	 * and then the read-eval-print loop.
+	 *
+	 * @throws RuntimeException if a startup command fails
+	 */
 	public void run(JepEngine engine, JepConsoleRunModel runModel, List<StartupCommand> startupCommands) {
 		if (runCalled)
 			throw new IllegalStateException("You should only call run once.");
 		runCalled = true;
 
+		ConsoleMetrics metrics = runModel.getMetrics().orElse(null);
+
+		// Chain the startup commands so that a failure skips the ones after it. Each
+		// command is queued when the one before it completes, on the interpreter
+		// thread, which then runs it without another hand-off, so waiting costs one
+		// hand-off however many commands there are.
+		AtomicReference<CompletableFuture<?>> startup = new AtomicReference<>(
+				CompletableFuture.completedFuture(null));
+		// The interpreter runs the commands one after another, so each one starts when
+		// the one before it completes.
+		AtomicLong previousEnd = new AtomicLong(System.nanoTime());
+		// Startup scripts run from compiled code cached across consoles. Compiling
+		// holds the interpreter lock, so independent scripts gain nothing from being
+		// compiled in parallel here.
+		if (startupCommands.stream().anyMatch(command -> command instanceof EvalFileStartupCommand))
+			startup.set(engine.evalOnceAsync(RUN_FILE_FUNCTION_DEF));
 		for (StartupCommand command : startupCommands) {
 			command.accept(new StartupCommandVisitor() {
 				@Override
 				public void visit(EvalFileStartupCommand command) {
-					try {
-						engine.eval(command.getFile());
-					} catch (ScriptException e) {
-						throw new RuntimeException(e);
-					}
+					add(() -> engine.invokeAsync(RUN_FILE_FUNCTION, command.getFile().getAbsolutePath()),
+							command.getFile().getPath());
+				}
+
+				@Override
+				public void visit(MapFileStartupCommand command) {
+					add(() -> engine.putDirectAsync(command.getVariableName(), command.map(), true),
+							command.getVariableName());
 				}
 
 				@Override
 				public void visit(PutStartupCommand command) {
-					engine.put(command.getVariableName(), command.getValue());
+					add(() -> engine.putAsync(command.getVariableName(), command.getValue()),
+							command.getVariableName());
+				}
+
+				private void add(Supplier<CompletableFuture<?>> queue, String detail) {
+					startup.set(startup.get().thenCompose(previous -> {
+						CompletableFuture<?> result = queue.get();
+						if (metrics != null)
+							result = result.whenComplete((value, e) -> {
+								long end = System.nanoTime();
+								metrics.record(Phase.STARTUP_COMMAND, detail, previousEnd.getAndSet(end));
+							});
+						return result;
+					}));
 				}
 			});
 		}
+		try {
+			startup.get().get();
+		} catch (ExecutionException | InterruptedException e) {
+			throw new RuntimeException(e);
+		}
 
 		// This call fires up the command-processing thread and throws a
 		// RuntimeException if not successful.
 		engine.getCommandQueue();
 
-		try (BufferedWriter writer = new BufferedWriter(runModel.getWriter())) {
+		// Write straight to the run model's writer, which buffers on its own until it
+		// is flushed, and the Swing console's writer at the latest until the next
+		// prompt.
+		try (Writer writer = runModel.getWriter()) {
 
+			long start = System.nanoTime();
 			String banner = runModel.getBanner().map(str -> buildBanner(str, engine)).orElse(null);
+			if (metrics != null && banner != null)
+				metrics.record(Phase.BUILD_BANNER, null, start);
 			if (banner != null) {
 				writer.write(banner);
 				writer.write("\n");
@@ -201,7 +285,10 @@ public class JepConsole {
 			}
 
 			try {
+				start = System.nanoTime();
 				runModel.setUpHistory();
+				if (metrics != null)
+					metrics.record(Phase.LOAD_HISTORY, null, start);
 				Runtime.getRuntime().addShutdownHook(new Thread(runModel::saveHistory, "JEP History Writer"));
 			} catch (Exception e) {
 				writer.write("No history from file: " + e.getMessage());
@@ -209,6 +296,9 @@ public class JepConsole {
 				writer.flush();
 			}
 
+			if (metrics != null)
+				metrics.firstPrompt();
+
 			List<String> evalLines = new LinkedList<>();
 			boolean ran = true;
 			while (true) {
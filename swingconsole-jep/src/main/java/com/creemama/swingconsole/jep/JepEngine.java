@@ -1,7 +1,10 @@
 package com.creemama.swingconsole.jep;
 
 import java.io.File;
+import java.nio.Buffer;
 import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map.Entry;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
@@ -11,6 +14,9 @@ import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.script.ScriptException;
 
+import com.creemama.swingconsole.LruCache;
+
+import jep.DirectNDArray;
 import jep.Jep;
 import jep.JepException;
 import jep.SharedInterpreter;
@@ -21,22 +27,47 @@ import jep.SharedInterpreter;
  */
 public class JepEngine {
 	private static class QueueCommand {
+		private static QueueCommand createBatchCommand(List<String> scripts, boolean cached) {
+			return new QueueCommand(null, QueueCommandType.BATCH, new ArrayList<>(scripts), cached);
+		}
+
 		private static QueueCommand createEvalFileCommand(String script) {
 			return new QueueCommand(script, QueueCommandType.EVAL_FILE, null);
 		}
 
-		private static QueueCommand createEvalStringCommand(String code) {
-			return new QueueCommand(code, QueueCommandType.EVAL_STRING, null);
+		private static QueueCommand createEvalStringCommand(String code, boolean cached) {
+			return new QueueCommand(code, QueueCommandType.EVAL_STRING, null, cached);
+		}
+
+		private static QueueCommand createInteractiveCommand(String source) {
+			return new QueueCommand(source, QueueCommandType.INTERACTIVE, null);
+		}
+
+		private static QueueCommand createInvokeCommand(String name, Object[] args) {
+			return new QueueCommand(name, QueueCommandType.INVOKE, args);
+		}
+
+		private static QueueCommand createQueryCommand(String name, Object[] args) {
+			return new QueueCommand(name, QueueCommandType.QUERY, args);
 		}
 
 		private static QueueCommand createPutCommand(String variableName, Object value) {
 			return new QueueCommand(variableName, QueueCommandType.PUT, value);
 		}
 
+		private static QueueCommand createPutReadOnlyCommand(String variableName, Object array) {
+			return new QueueCommand(variableName, QueueCommandType.PUT_READ_ONLY, array);
+		}
+
 		private static QueueCommand createShutDownCommand() {
 			return new QueueCommand(null, QueueCommandType.SHUT_DOWN, null);
 		}
 
+		/**
+		 * Whether to keep the code objects of the code to evaluate
+		 */
+		private final boolean cached;
+
 		private final String code;
 
 		private final CompletableFuture<Object> future = new CompletableFuture<>();
@@ -46,6 +77,11 @@ public class JepEngine {
 		private final Object value;
 
 		private QueueCommand(String code, QueueCommandType type, Object value) {
+			this(code, type, value, false);
+		}
+
+		private QueueCommand(String code, QueueCommandType type, Object value, boolean cached) {
+			this.cached = cached;
 			this.code = code;
 			this.type = type;
 			this.value = value;
@@ -53,18 +89,135 @@ public class JepEngine {
 	}
 
 	private enum QueueCommandType {
-		EVAL_FILE, EVAL_STRING, PUT, SHUT_DOWN
+		BATCH, EVAL_FILE, EVAL_STRING, INTERACTIVE, INVOKE, PUT, PUT_READ_ONLY, QUERY, SHUT_DOWN
 	}
 
+	/**
+	 * The most code objects kept for each of {@link #EVAL_FUNCTION} and
+	 * {@link #INTERACTIVE_FUNCTION}
+	 */
+	private static final int CODE_CACHE_SIZE = 256;
+
+	/**
+	 * The Python function evaluating code from the code object compiled the last
+	 * time the same code was evaluated
+	 */
+	private static final String EVAL_FUNCTION = "_swingconsole_eval";
+
+	/**
+	 * The Python function flushing {@code sys.stdout} and {@code sys.stderr}, as
+	 * Python's interactive interpreter does after every statement
+	 */
+	private static final String FLUSH_OUTPUT_FUNCTION = "_swingconsole_flush_output";
+
+	/**
+	 * The Python function compiling and running console input as Python's
+	 * interactive interpreter does
+	 */
+	private static final String INTERACTIVE_FUNCTION = "_swingconsole_interact";
+
+	/**
+	 * The Python function setting a variable to a NumPy array made read-only
+	 */
+	private static final String PUT_READ_ONLY_FUNCTION = "_swingconsole_put_read_only";
+
+	/**
+	 * Defines {@link #EVAL_FUNCTION}, {@link #INTERACTIVE_FUNCTION},
+	 * {@link #FLUSH_OUTPUT_FUNCTION}, and {@link #PUT_READ_ONLY_FUNCTION}. The first two keep the code objects they
+	 * compile by source text. Java decides which code objects to keep: each call
+	 * names the source, if any, that the Java side evicted from its
+	 * {@link LruCache} of the same sources, and {@link #EVAL_FUNCTION} keeps
+	 * nothing for code that runs once.
+	 */
+	private static final String CODE_FUNCTIONS_DEF = "def " + EVAL_FUNCTION
+			+ "(source, evicted, cache, _codes={}):\n" //
+			+ "    if evicted is not None:\n" //
+			+ "        _codes.pop(evicted, None)\n" //
+			+ "    entry = _codes.get(source)\n" //
+			+ "    if entry is None:\n" //
+			+ "        try:\n" //
+			+ "            entry = (True, compile(source, '<string>', 'eval'))\n" //
+			+ "        except SyntaxError:\n" //
+			+ "            try:\n" //
+			+ "                entry = (False, compile(source, '<string>', 'exec'))\n" //
+			+ "            except (OverflowError, SyntaxError, ValueError) as e:\n" //
+			+ "                entry = (False, e)\n" //
+			+ "        if cache:\n" //
+			+ "            _codes[source] = entry\n" //
+			+ "    expression, code = entry\n" //
+			+ "    if isinstance(code, BaseException):\n" //
+			+ "        raise code.with_traceback(None)\n" //
+			+ "    if expression:\n" //
+			+ "        return eval(code, globals())\n" //
+			+ "    exec(code, globals())\n" //
+			+ "\n" //
+			+ "def " + INTERACTIVE_FUNCTION
+			+ "(source, evicted, _compile=__import__('codeop').CommandCompiler(), _codes={}):\n" //
+			+ "    import sys, traceback\n" //
+			+ "    if evicted is not None:\n" //
+			+ "        _codes.pop(evicted, None)\n" //
+			+ "    try:\n" //
+			+ "        code = _codes[source]\n" //
+			+ "    except KeyError:\n" //
+			+ "        try:\n" //
+			+ "            code = _compile(source, '<console>', 'single')\n" //
+			+ "        except (OverflowError, SyntaxError, ValueError):\n" //
+			+ "            code = ''.join(traceback.format_exception_only(*sys.exc_info()[:2]))\n" //
+			+ "        _codes[source] = code\n" //
+			+ "    if code is None or isinstance(code, str):\n" //
+			+ "        return code\n" //
+			+ "    try:\n" //
+			+ "        exec(code, globals())\n" //
+			+ "    except Exception:\n" //
+			+ "        kind, value, tb = sys.exc_info()\n" //
+			+ "        return ''.join(traceback.format_exception(kind, value, tb.tb_next))\n" //
+			+ "    finally:\n" //
+			+ "        " + FLUSH_OUTPUT_FUNCTION + "()\n" //
+			+ "    return ''\n" //
+			+ "\n" //
+			+ "def " + FLUSH_OUTPUT_FUNCTION + "():\n" //
+			+ "    import sys\n" //
+			+ "    for stream in (sys.stdout, sys.stderr):\n" //
+			+ "        try:\n" //
+			+ "            stream.flush()\n" //
+			+ "        except Exception:\n" //
+			+ "            pass\n" //
+			+ "\n" //
+			+ "def " + PUT_READ_ONLY_FUNCTION + "(name, array):\n" //
+			+ "    array.flags.writeable = False\n" //
+			+ "    globals()[name] = array\n";
+
 	private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
 
 	private Entry<BlockingQueue<QueueCommand>, Throwable> commandQueue;
 
+	/**
+	 * Whether the interpreter defines the functions of
+	 * {@link #CODE_FUNCTIONS_DEF}; only the interpreter thread reads and writes it
+	 */
+	private boolean codeFunctionsDefined;
+
+	/**
+	 * The sources whose code objects {@link #EVAL_FUNCTION} keeps
+	 */
+	final private LruCache<String, Boolean> evalCodes = new LruCache<>(CODE_CACHE_SIZE, this::evicted);
+
+	/**
+	 * The source the last addition to a code cache evicted; only the interpreter
+	 * thread reads and writes it
+	 */
+	private String evictedCode;
+
+	/**
+	 * The sources whose code objects {@link #INTERACTIVE_FUNCTION} keeps
+	 */
+	final private LruCache<String, Boolean> interactiveCodes = new LruCache<>(CODE_CACHE_SIZE, this::evicted);
+
+	private volatile long modificationCount;
+
 	public Object eval(File file) throws ScriptException {
 		try {
-			QueueCommand command = QueueCommand.createEvalFileCommand(file.getAbsolutePath());
-			getCommandQueue().add(command);
-			return command.future.get();
+			return evalAsync(file).get();
 		} catch (ExecutionException | InterruptedException | RuntimeException e) {
 			throw new ScriptException(e);
 		}
@@ -72,19 +225,138 @@ public class JepEngine {
 
 	public Object eval(String script) throws ScriptException {
 		try {
-			QueueCommand command = QueueCommand.createEvalStringCommand(script);
-			getCommandQueue().add(command);
-			return command.future.get();
+			return evalAsync(script).get();
 		} catch (ExecutionException | InterruptedException | RuntimeException e) {
 			throw new ScriptException(e);
 		}
 	}
 
+	/**
+	 * Queues a file to run without waiting for it.
+	 *
+	 * @param file the Python script to run
+	 * @return a future completing once the script ran or exceptionally with a
+	 *         {@link ScriptException}
+	 */
+	public CompletableFuture<Object> evalAsync(File file) {
+		return submit(QueueCommand.createEvalFileCommand(file.getAbsolutePath()));
+	}
+
+	/**
+	 * Queues code to evaluate without waiting for it.
+	 *
+	 * @param script the Python expression or statements to evaluate
+	 * @return a future completing with the string value of the expression,
+	 *         {@code null} for statements, or exceptionally with a
+	 *         {@link ScriptException}
+	 */
+	public CompletableFuture<Object> evalAsync(String script) {
+		return submit(QueueCommand.createEvalStringCommand(script, true));
+	}
+
+	/**
+	 * Queues code to evaluate in order as a single command, so that the whole
+	 * batch costs one hand-off to the interpreter thread.
+	 *
+	 * @param scripts the Python expressions or statements to evaluate
+	 * @return a future completing with the result of each script, as
+	 *         {@link #evalAsync(String)} would, or exceptionally with the
+	 *         {@link ScriptException} of the first script that failed, in which
+	 *         case the scripts after it do not run
+	 */
+	@SuppressWarnings("unchecked")
+	public CompletableFuture<List<Object>> evalBatch(List<String> scripts) {
+		return submit(QueueCommand.createBatchCommand(scripts, true)).thenApply(results -> (List<Object>) results);
+	}
+
+	/**
+	 * Queues code that runs once, such as the setup of a console, to evaluate in
+	 * order as a single command without keeping its compiled code, so that it
+	 * does not push the code of other evaluations out of the code cache.
+	 *
+	 * @see #evalBatch(List)
+	 */
+	@SuppressWarnings("unchecked")
+	CompletableFuture<List<Object>> evalBatchOnce(List<String> scripts) {
+		return submit(QueueCommand.createBatchCommand(scripts, false)).thenApply(results -> (List<Object>) results);
+	}
+
+	/**
+	 * Evaluates code that runs once without keeping its compiled code.
+	 *
+	 * @see #evalOnceAsync(String)
+	 */
+	Object evalOnce(String script) throws ScriptException {
+		try {
+			return evalOnceAsync(script).get();
+		} catch (ExecutionException | InterruptedException | RuntimeException e) {
+			throw new ScriptException(e);
+		}
+	}
+
+	/**
+	 * Queues code that runs once, such as the setup of a console, to evaluate
+	 * without keeping its compiled code, so that it does not push the code of
+	 * other evaluations out of the code cache.
+	 *
+	 * @see #evalAsync(String)
+	 */
+	CompletableFuture<Object> evalOnceAsync(String script) {
+		return submit(QueueCommand.createEvalStringCommand(script, false));
+	}
+
+	/**
+	 * Compiles and runs console input as Python's interactive interpreter does.
+	 *
+	 * @see #evalInteractiveAsync(String)
+	 */
+	public String evalInteractive(String source) throws ScriptException {
+		try {
+			return evalInteractiveAsync(source).get();
+		} catch (ExecutionException | InterruptedException | RuntimeException e) {
+			throw new ScriptException(e);
+		}
+	}
+
+	/**
+	 * Queues console input to compile once in Python's interactive
+	 * {@code "single"} mode and, if it is a complete statement, run.
+	 * <p>
+	 * As in Python's interactive interpreter, the value of an expression goes to
+	 * {@code sys.displayhook}, which prints it to {@code sys.stdout}, input is
+	 * incomplete until a compound statement ends with a blank line, and
+	 * {@code sys.stdout} and {@code sys.stderr} are flushed after the statement
+	 * runs, so that buffered output comes before the traceback and the next
+	 * prompt.
+	 * </p>
+	 *
+	 * @param source the lines entered so far, joined by newlines
+	 * @return a future completing with {@code null} if the input is incomplete,
+	 *         otherwise the syntax error or traceback of the input or an empty
+	 *         string if it ran without one, or exceptionally with a
+	 *         {@link ScriptException}
+	 */
+	public CompletableFuture<String> evalInteractiveAsync(String source) {
+		return submit(QueueCommand.createInteractiveCommand(source)).thenApply(result -> (String) result);
+	}
+
+	/**
+	 * Returns a count that changes before every command that may change the
+	 * interpreter's namespace, that is, every command other than the calls that
+	 * tab completion makes to read the namespace. Callers can cache what they learn from
+	 * the namespace for as long as the count stays the same.
+	 *
+	 * @return the number of commands that may have changed the namespace
+	 */
+	public long getModificationCount() {
+		return modificationCount;
+	}
+
 	public synchronized BlockingQueue<QueueCommand> getCommandQueue() {
 		if (commandQueue == null) {
 			CompletableFuture<Void> interpreterCreated = new CompletableFuture<>();
 			BlockingQueue<QueueCommand> newCommandQueue = new LinkedBlockingQueue<>();
-			Thread interpreterThread = new Thread(() -> processCommands(interpreterCreated),
+			Thread interpreterThread = new Thread(() -> processCommands(newCommandQueue, interpreterCreated),
 					"JEP SubInterpreter " + THREAD_COUNT.getAndAdd(1));
 			interpreterThread.setDaemon(true);
 			interpreterThread.start();
@@ -100,30 +372,166 @@ public class JepEngine {
 		throw new RuntimeException(commandQueue.getValue());
 	}
 
-	private void processCommands(CompletableFuture<Void> interpreterCreated) {
+	/**
+	 * Records that the interpreter is about to run some code and returns the
+	 * source whose code object to forget to make room for it, if any.
+	 */
+	private String cacheCode(LruCache<String, Boolean> codes, String code) {
+		if (codes.get(code) == null)
+			codes.put(code, Boolean.TRUE);
+		String evicted = evictedCode;
+		evictedCode = null;
+		return evicted;
+	}
+
+	private void defineCodeFunctions(Jep interp) throws JepException {
+		if (!codeFunctionsDefined) {
+			interp.exec(CODE_FUNCTIONS_DEF);
+			codeFunctionsDefined = true;
+		}
+	}
+
+	private Object evalString(Jep interp, String code, boolean cached) throws ScriptException {
+		try {
+			defineCodeFunctions(interp);
+			Object result = cached ? interp.invoke(EVAL_FUNCTION, code, cacheCode(evalCodes, code), true)
+					: interp.invoke(EVAL_FUNCTION, code, null, false);
+			return result == null ? null : result.toString();
+		} catch (JepException e) {
+			ScriptException scriptEx = new ScriptException("jep.Jep.invoke threw " + e.getMessage());
+			scriptEx.initCause(e);
+			throw scriptEx;
+		}
+	}
+
+	private void evicted(String code, Boolean value) {
+		evictedCode = code;
+	}
+
+	/**
+	 * Returns how many evaluations ran code compiled by an earlier evaluation of
+	 * the same source, skipping parsing and compilation.
+	 *
+	 * @return the number of hits of the code caches
+	 */
+	public long getCodeCacheHits() {
+		return evalCodes.getHits() + interactiveCodes.getHits();
+	}
+
+	/**
+	 * Returns how many evaluations compiled their source.
+	 *
+	 * @return the number of misses of the code caches
+	 */
+	public long getCodeCacheMisses() {
+		return evalCodes.getMisses() + interactiveCodes.getMisses();
+	}
+
+	/**
+	 * Calls a Python function.
+	 *
+	 * @param name the name of the function, such as {@code "dir"}
+	 * @param args the arguments to pass
+	 * @return the return value converted as Jep converts values, for example a
+	 *         list to a {@link java.util.List}
+	 * @throws ScriptException if the call fails
+	 */
+	public Object invoke(String name, Object... args) throws ScriptException {
+		try {
+			return invokeAsync(name, args).get();
+		} catch (ExecutionException | InterruptedException | RuntimeException e) {
+			throw new ScriptException(e);
+		}
+	}
+
+	/**
+	 * Queues a call to a Python function without waiting for it.
+	 *
+	 * @param name the name of the function
+	 * @param args the arguments to pass
+	 * @return a future completing with the return value, as
+	 *         {@link #invoke(String, Object...)} returns it, or exceptionally
+	 *         with a {@link ScriptException}
+	 */
+	public CompletableFuture<Object> invokeAsync(String name, Object... args) {
+		return submit(QueueCommand.createInvokeCommand(name, args));
+	}
+
+	/**
+	 * Queues a call to a Python function that reads but does not change the
+	 * namespace, and so leaves the modification count alone.
+	 *
+	 * @see #invokeAsync(String, Object...)
+	 */
+	CompletableFuture<Object> queryAsync(String name, Object... args) {
+		return submit(QueueCommand.createQueryCommand(name, args));
+	}
+
+	private void processBatchCommand(Jep interp, QueueCommand command) {
+		@SuppressWarnings("unchecked")
+		List<String> scripts = (List<String>) command.value;
+		List<Object> results = new ArrayList<>(scripts.size());
+		for (String script : scripts) {
+			try {
+				results.add(evalString(interp, script, command.cached));
+			} catch (ScriptException e) {
+				command.future.completeExceptionally(e);
+				return;
+			}
+		}
+		command.future.complete(results);
+	}
+
+	private void processCommands(BlockingQueue<QueueCommand> queue, CompletableFuture<Void> interpreterCreated) {
 		// According to https://github.com/ninia/jep/wiki/Numpy-Usage, "Numpy does not
 		// support Python sub-interpreters. It is recommended to use Jep's
 		// SharedInterpreter for applications that import numpy."
 		try (SharedInterpreter interp = new SharedInterpreter()) {
 			interpreterCreated.complete(null);
+			List<QueueCommand> commands = new ArrayList<>();
 			while (true) {
-				QueueCommand command = getCommandQueue().take();
-				switch (command.type) {
-				case EVAL_FILE:
-					processEvalFileCommand(interp, command);
-					break;
-				case EVAL_STRING:
-					processEvalStringCommand(interp, command);
-					break;
-				case PUT:
-					processPutCommand(interp, command);
-					break;
-				case SHUT_DOWN:
-					command.future.complete(null);
-					return;
-				default:
-					throw new IllegalStateException("Handle " + command.type + ".");
+				// Wait for one command, and then take every command queued behind it so
+				// that a burst of commands costs one wake-up.
+				commands.add(queue.take());
+				queue.drainTo(commands);
+				for (int i = 0; i < commands.size(); i++) {
+					QueueCommand command = commands.get(i);
+					if (command.type != QueueCommandType.QUERY)
+						// A single thread writes the count.
+						modificationCount++;
+					switch (command.type) {
+					case BATCH:
+						processBatchCommand(interp, command);
+						break;
+					case EVAL_FILE:
+						processEvalFileCommand(interp, command);
+						break;
+					case EVAL_STRING:
+						processEvalStringCommand(interp, command);
+						break;
+					case INTERACTIVE:
+						processInteractiveCommand(interp, command);
+						break;
+					case INVOKE:
+					case QUERY:
+						processInvokeCommand(interp, command);
+						break;
+					case PUT:
+						processPutCommand(interp, command);
+						break;
+					case PUT_READ_ONLY:
+						processPutReadOnlyCommand(interp, command);
+						break;
+					case SHUT_DOWN:
+						command.future.complete(null);
+						for (QueueCommand rejected : commands.subList(i + 1, commands.size()))
+							rejected.future.completeExceptionally(new ScriptException("The engine shut down."));
+						return;
+					default:
+						throw new IllegalStateException("Handle " + command.type + ".");
+					}
 				}
+				commands.clear();
 			}
 		} catch (InterruptedException e) {
 			// Ignore.
@@ -164,23 +572,32 @@ public class JepEngine {
 
 	private void processEvalStringCommand(Jep interp, QueueCommand command) {
 		try {
-			Object result = interp.getValue(command.code);
+			command.future.complete(evalString(interp, command.code, command.cached));
+		} catch (ScriptException e) {
+			command.future.completeExceptionally(e);
+		}
+	}
+
+	private void processInteractiveCommand(Jep interp, QueueCommand command) {
+		try {
+			defineCodeFunctions(interp);
+			Object result = interp.invoke(INTERACTIVE_FUNCTION, command.code,
+					cacheCode(interactiveCodes, command.code));
 			command.future.complete(result == null ? null : result.toString());
-		} catch (JepException getValueException) {
-			try {
-				interp.exec(command.code);
-				command.future.complete(null);
-			} catch (JepException execException) {
-				StringBuilder errors = new StringBuilder();
-
-				errors.append("jep.Jep.getValue threw " + getValueException.getMessage());
-				errors.append("\n\n");
-				errors.append("jep.Jep.exec threw " + execException.getMessage());
-				errors.append("\n\n");
-
-				ScriptException scriptEx = new ScriptException(errors.toString());
-				command.future.completeExceptionally(scriptEx);
-			}
+		} catch (JepException e) {
+			ScriptException scriptEx = new ScriptException("jep.Jep.invoke threw " + e.getMessage());
+			scriptEx.initCause(e);
+			command.future.completeExceptionally(scriptEx);
+		}
+	}
+
+	private void processInvokeCommand(Jep interp, QueueCommand command) {
+		try {
+			command.future.complete(interp.invoke(command.code, (Object[]) command.value));
+		} catch (JepException e) {
+			ScriptException scriptEx = new ScriptException("jep.Jep.invoke threw " + e.getMessage());
+			scriptEx.initCause(e);
+			command.future.completeExceptionally(scriptEx);
 		}
 	}
 
@@ -195,16 +612,94 @@ public class JepEngine {
 		}
 	}
 
+	private void processPutReadOnlyCommand(Jep interp, QueueCommand command) {
+		try {
+			defineCodeFunctions(interp);
+			interp.invoke(PUT_READ_ONLY_FUNCTION, command.code, command.value);
+			command.future.complete(null);
+		} catch (JepException e) {
+			ScriptException scriptEx = new ScriptException("jep.Jep.invoke threw " + e.getMessage());
+			scriptEx.initCause(e);
+			command.future.completeExceptionally(scriptEx);
+		}
+	}
+
 	public void put(String variableName, Object value) {
 		try {
-			QueueCommand command = QueueCommand.createPutCommand(variableName, value);
-			getCommandQueue().add(command);
-			command.future.get();
+			putAsync(variableName, value).get();
 		} catch (ExecutionException | InterruptedException | RuntimeException e) {
 			throw new RuntimeException(e);
 		}
 	}
 
+	/**
+	 * Sets a Python variable to a NumPy array sharing the memory of a direct
+	 * buffer.
+	 *
+	 * @see #putDirectAsync(String, Buffer, boolean, int...)
+	 */
+	public void putDirect(String variableName, Buffer buffer, boolean unsigned, int... dimensions) {
+		try {
+			putDirectAsync(variableName, buffer, unsigned, dimensions).get();
+		} catch (ExecutionException | InterruptedException | RuntimeException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Queues setting a Python variable to a NumPy array sharing the memory of a
+	 * direct buffer, such as a {@link java.nio.MappedByteBuffer}, without waiting
+	 * for it. Nothing is converted or copied, so the array costs no time or memory
+	 * however large the buffer is. The array is read-only if the buffer is.
+	 * <p>
+	 * The array reads the memory in the platform's byte order, so a buffer viewed
+	 * as, say, a {@link java.nio.FloatBuffer} should come from a
+	 * {@link java.nio.ByteBuffer} in {@link java.nio.ByteOrder#nativeOrder()}.
+	 * The interpreter needs NumPy.
+	 * </p>
+	 *
+	 * @param variableName the name of the variable
+	 * @param buffer       the direct buffer
+	 * @param unsigned     whether the elements are unsigned integers
+	 * @param dimensions   the shape of the array or nothing for a one-dimensional
+	 *                     array of the buffer's capacity
+	 * @return a future completing once the variable is set or exceptionally with
+	 *         a {@link ScriptException}
+	 * @throws IllegalArgumentException if the buffer is not direct or does not
+	 *                                  match the dimensions
+	 */
+	public CompletableFuture<Void> putDirectAsync(String variableName, Buffer buffer, boolean unsigned,
+			int... dimensions) {
+		DirectNDArray<Buffer> array = dimensions.length == 0 ? new DirectNDArray<>(buffer, unsigned)
+				: new DirectNDArray<>(buffer, unsigned, dimensions);
+		if (buffer.isReadOnly())
+			// Jep hands NumPy the memory as writable, so clear the flag before the
+			// variable is visible.
+			return submit(QueueCommand.createPutReadOnlyCommand(variableName, array)).thenApply(result -> null);
+		return putAsync(variableName, array);
+	}
+
+	/**
+	 * Queues setting a Python variable without waiting for it.
+	 *
+	 * @param variableName the name of the variable
+	 * @param value        the value of the variable
+	 * @return a future completing once the variable is set or exceptionally with
+	 *         a {@link ScriptException}
+	 */
+	public CompletableFuture<Void> putAsync(String variableName, Object value) {
+		return submit(QueueCommand.createPutCommand(variableName, value)).thenApply(result -> null);
+	}
+
+	private CompletableFuture<Object> submit(QueueCommand command) {
+		try {
+			getCommandQueue().add(command);
+		} catch (RuntimeException e) {
+			command.future.completeExceptionally(e);
+		}
+		return command.future;
+	}
+
 	public void shutDown() {
 		try {
 			QueueCommand command = QueueCommand.createShutDownCommand();
@@ -0,0 +1,166 @@
+package com.creemama.swingconsole.jep;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A pool of {@link JepEngine}s started and set up ahead of time so that a
+ * {@link JepSwingConsole} shows its first prompt without waiting for an
+ * interpreter.
+ * <p>
+ * Every engine in the pool has its interpreter thread running, {@code sys} and
+ * the {@code JepIO} class in its namespace, tab completion set up, and the
+ * modules the banner asks for imported. Each engine taken is replaced by one
+ * warmed in the background, one at a time, so that the pool keeps its size.
+ * </p>
+ *
+ * <pre>
+ * JepEnginePool pool = new JepEnginePool(2);
+ * ...
+ * new SwingConsoleFrame("Python").run(new JepSwingConsole(config, pool));
+ * </pre>
+ */
+public class JepEnginePool implements Closeable {
+	/**
+	 * An engine set up for a console
+	 */
+	static class PreparedEngine {
+		final private JepCompleter completer;
+
+		final private JepEngine engine;
+
+		private PreparedEngine(JepEngine engine, JepCompleter completer) {
+			this.completer = completer;
+			this.engine = engine;
+		}
+
+		Optional<JepCompleter> getCompleter() {
+			return Optional.ofNullable(completer);
+		}
+
+		JepEngine getEngine() {
+			return engine;
+		}
+	}
+
+	private static final String JEP_IO_CLASS = "import io\n" //
+			+ "\n" //
+			+ "class JepIO(io.RawIOBase):\n" //
+			+ "    def __init__(self, java_io):\n" //
+			+ "        super(JepIO, self).__init__()\n" //
+			+ "        self._java_io = java_io\n" //
+			+ "\n" //
+			+ "    def read(self, size=-1):\n" //
+			+ "        return self._java_io.read(size)\n" //
+			+ "\n" //
+			+ "    def readinto(self, b):\n" //
+			+ "        return self._java_io.readinto(b)\n" //
+			+ "\n" //
+			+ "    def write(self, b):\n" //
+			+ "        return self._java_io.write(b)\n";
+
+	/**
+	 * Does the setup every console needs before its output is redirected.
+	 *
+	 * @param engine the engine to set up
+	 * @return the engine and its completer
+	 * @throws RuntimeException if the interpreter did not start
+	 */
+	static PreparedEngine prepare(JepEngine engine) {
+		try {
+			engine.evalBatchOnce(Arrays.asList("import sys", JEP_IO_CLASS)).get();
+		} catch (ExecutionException | InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+		return new PreparedEngine(engine, JepCompleter.create(engine).orElse(null));
+	}
+
+	private boolean closed;
+
+	/**
+	 * The engines in the pool, oldest first; guarded by this
+	 */
+	final private Deque<CompletableFuture<PreparedEngine>> engines = new ArrayDeque<>();
+
+	/**
+	 * The thread warming engines, started when needed
+	 */
+	final private ExecutorService warmer = new ThreadPoolExecutor(0, 1, 60L, TimeUnit.SECONDS,
+			new LinkedBlockingQueue<>(), r -> {
+				Thread thread = new Thread(r, "JepEnginePool-warming");
+				thread.setDaemon(true);
+				return thread;
+			});
+
+	/**
+	 * Creates a pool and starts warming its engines.
+	 *
+	 * @param size the number of engines to keep ready
+	 * @throws IllegalArgumentException if the size is not positive
+	 */
+	public JepEnginePool(int size) {
+		if (size < 1)
+			throw new IllegalArgumentException("The size of the pool must be positive.");
+		for (int i = 0; i < size; i++)
+			engines.add(warm());
+	}
+
+	/**
+	 * Shuts down the engines in the pool, including those still warming. Engines
+	 * already taken are left running.
+	 */
+	@Override
+	public void close() {
+		synchronized (this) {
+			if (closed)
+				return;
+			closed = true;
+		}
+		for (CompletableFuture<PreparedEngine> engine : engines)
+			engine.thenAccept(prepared -> prepared.getEngine().shutDown());
+		engines.clear();
+		warmer.shutdown();
+	}
+
+	/**
+	 * Takes the oldest engine from the pool, waiting for it to warm if needed,
+	 * and starts warming its replacement.
+	 *
+	 * @return the engine and its completer
+	 * @throws IllegalStateException if the pool is closed
+	 * @throws RuntimeException      if the interpreter did not start
+	 */
+	PreparedEngine take() {
+		CompletableFuture<PreparedEngine> engine;
+		synchronized (this) {
+			if (closed)
+				throw new IllegalStateException("The pool is closed.");
+			engine = engines.poll();
+			engines.add(warm());
+		}
+		try {
+			return engine.get();
+		} catch (ExecutionException | InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private CompletableFuture<PreparedEngine> warm() {
+		return CompletableFuture.supplyAsync(() -> {
+			PreparedEngine prepared = prepare(new JepEngine());
+			// The banner looks these up; importing them now leaves only the lookups.
+			prepared.getEngine().evalOnceAsync("import jep");
+			prepared.getEngine().evalOnceAsync("from platform import python_version");
+			return prepared;
+		}, warmer);
+	}
+}
@@ -2,24 +2,25 @@ package com.creemama.swingconsole.jep;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
 import java.io.UncheckedIOException;
 import java.io.Writer;
-import java.nio.charset.Charset;
+import java.util.Arrays;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
 
-import javax.script.ScriptException;
-
+import com.creemama.swingconsole.CompactHistory;
 import com.creemama.swingconsole.ConsoleConfig;
+import com.creemama.swingconsole.ConsoleMetrics;
+import com.creemama.swingconsole.ConsoleMetrics.Phase;
+import com.creemama.swingconsole.MappedHistory;
 import com.creemama.swingconsole.SwingConsole;
 import com.creemama.swingconsole.SwingConsolePane;
 import com.creemama.swingconsole.jep.JepConsole.JepConsoleRunModel;
+import com.creemama.swingconsole.jep.JepEnginePool.PreparedEngine;
 
-import jep.python.PyObject;
 import jline.console.completer.Completer;
-import jline.console.history.FileHistory;
 import jline.console.history.History;
-import jline.console.history.MemoryHistory;
+import jline.console.history.PersistentHistory;
 
 /**
  * A task that hooks up and runs a <a href="https://github.com/ninia/jep">Java
@@ -29,15 +30,32 @@ import jline.console.history.MemoryHistory;
  */
 public class JepSwingConsole implements SwingConsole {
 	public static class JepStdOut {
-		final private SwingConsolePane console;
+		final private Writer writer;
 
 		public JepStdOut(SwingConsolePane console) {
-			this.console = console;
+			this.writer = console.getWriter();
+		}
+
+		/**
+		 * Inserts the output written so far into the console, waiting for it to do
+		 * so.
+		 */
+		public void flush() {
+			try {
+				writer.flush();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
 		}
 
-		public void write(PyObject b) {
+		/**
+		 * Writes a Python string, which Jep hands over as a Java string, straight
+		 * into the console's output buffer. The {@link #BUFFERED_STDOUT_CLASS}
+		 * wrapping this object calls it with whole chunks of output.
+		 */
+		public void write(String s) {
 			try {
-				console.getOutputStream().write(b.toString().getBytes(Charset.forName("UTF-8")));
+				writer.write(s);
 			} catch (IOException e) {
 				throw new UncheckedIOException(e);
 			}
@@ -55,12 +73,16 @@ public class JepSwingConsole implements SwingConsole {
 
 		final private File historyFile;
 
-		JepSwingConsoleRunModel(String banner, Completer completer, SwingConsolePane console, File historyFile) {
+		final private ConsoleMetrics metrics;
+
+		JepSwingConsoleRunModel(String banner, Completer completer, SwingConsolePane console, File historyFile,
+				ConsoleMetrics metrics) {
 			this.banner = banner;
 			this.completer = completer;
 			this.console = console;
-			this.history = new MemoryHistory();
+			this.history = new CompactHistory();
 			this.historyFile = historyFile;
+			this.metrics = metrics;
 		}
 
 		@Override
@@ -68,9 +90,14 @@ public class JepSwingConsole implements SwingConsole {
 			return Optional.ofNullable(banner);
 		}
 
+		@Override
+		public Optional<ConsoleMetrics> getMetrics() {
+			return Optional.ofNullable(metrics);
+		}
+
 		@Override
 		public Writer getWriter() {
-			return new OutputStreamWriter(console.getOutputStream());
+			return console.getWriter();
 		}
 
 		@Override
@@ -84,8 +111,8 @@ public class JepSwingConsole implements SwingConsole {
 		@Override
 		public void saveHistory() {
 			try {
-				if (history instanceof FileHistory)
-					((FileHistory) history).flush();
+				if (history instanceof PersistentHistory)
+					((PersistentHistory) history).flush();
 			} catch (Exception e) {
 				// Ignore.
 			}
@@ -93,10 +120,10 @@ public class JepSwingConsole implements SwingConsole {
 
 		@Override
 		public void setUpHistory() throws Exception {
-			History newHistory = new MemoryHistory();
+			History newHistory = new CompactHistory();
 			try {
 				if (historyFile != null)
-					newHistory = new FileHistory(historyFile);
+					newHistory = new MappedHistory(historyFile);
 			} catch (RuntimeException e) {
 				// There is no history from file.
 				throw e;
@@ -106,44 +133,129 @@ public class JepSwingConsole implements SwingConsole {
 		}
 	}
 
+	/**
+	 * Python's {@code sys.stdout} and {@code sys.stderr} in the console: a text
+	 * stream gathering output in Python and handing it to a {@link JepStdOut} in
+	 * chunks, so that a loop printing many lines crosses into Java once per chunk
+	 * instead of twice per line.
+	 * <p>
+	 * A chunk goes to Java once {@link #FLUSH_LINES} lines or {@link #FLUSH_CHARS}
+	 * characters are waiting, when a line ends {@link #FLUSH_INTERVAL} seconds or
+	 * more after the last chunk, so that a long-running loop shows its progress,
+	 * and on {@code flush()}, which also waits for the console to show the
+	 * output. {@link JepEngine} flushes {@code sys.stdout} and {@code sys.stderr}
+	 * after every statement entered at the prompt or startup script run. Both
+	 * streams are the same object, so output and errors stay in order.
+	 * </p>
+	 */
+	private static final String BUFFERED_STDOUT_CLASS = "import io\n" //
+			+ "import time\n" //
+			+ "\n" //
+			+ "class JepBufferedStdOut(io.TextIOBase):\n" //
+			+ "    encoding = 'utf-8'\n" //
+			+ "    errors = 'strict'\n" //
+			+ "\n" //
+			+ "    def __init__(self, java_out, max_lines, max_chars, interval):\n" //
+			+ "        super(JepBufferedStdOut, self).__init__()\n" //
+			+ "        self._java_out = java_out\n" //
+			+ "        self._max_lines = max_lines\n" //
+			+ "        self._max_chars = max_chars\n" //
+			+ "        self._interval = interval\n" //
+			+ "        self._handed_off = time.time()\n" //
+			+ "        self._parts = []\n" //
+			+ "        self._lines = 0\n" //
+			+ "        self._chars = 0\n" //
+			+ "\n" //
+			+ "    def writable(self):\n" //
+			+ "        return True\n" //
+			+ "\n" //
+			+ "    def write(self, s):\n" //
+			+ "        if not isinstance(s, str):\n" //
+			+ "            raise TypeError('write() argument must be str, not ' + type(s).__name__)\n" //
+			+ "        if s:\n" //
+			+ "            self._parts.append(s)\n" //
+			+ "            self._lines += s.count('\\n')\n" //
+			+ "            self._chars += len(s)\n" //
+			+ "            if (self._lines >= self._max_lines or self._chars >= self._max_chars\n" //
+			+ "                    or '\\n' in s and time.time() - self._handed_off >= self._interval):\n" //
+			+ "                self._hand_off()\n" //
+			+ "        return len(s)\n" //
+			+ "\n" //
+			+ "    def flush(self):\n" //
+			+ "        self._hand_off()\n" //
+			+ "        self._java_out.flush()\n" //
+			+ "\n" //
+			+ "    def _hand_off(self):\n" //
+			+ "        self._handed_off = time.time()\n" //
+			+ "        if self._parts:\n" //
+			+ "            parts, self._parts = self._parts, []\n" //
+			+ "            self._lines = self._chars = 0\n" //
+			+ "            self._java_out.write(''.join(parts))\n";
+
+	/**
+	 * The most characters {@link #BUFFERED_STDOUT_CLASS} holds before handing
+	 * them to Java
+	 */
+	private static final int FLUSH_CHARS = 64 * 1024;
+
+	/**
+	 * The seconds after handing output to Java that {@link #BUFFERED_STDOUT_CLASS}
+	 * hands over the next complete line
+	 */
+	private static final double FLUSH_INTERVAL = 0.1;
+
+	/**
+	 * The most lines {@link #BUFFERED_STDOUT_CLASS} holds before handing them to
+	 * Java
+	 */
+	private static final int FLUSH_LINES = 1000;
+
 	final private ConsoleConfig config;
 
+	final private JepEnginePool pool;
+
 	public JepSwingConsole(ConsoleConfig config) {
+		this(config, null);
+	}
+
+	/**
+	 * Creates a console that takes its engine from a pool instead of starting
+	 * one.
+	 *
+	 * @param config the console configuration
+	 * @param pool   the pool to take the engine from or {@code null} to start
+	 *               one
+	 */
+	public JepSwingConsole(ConsoleConfig config, JepEnginePool pool) {
 		this.config = config;
+		this.pool = pool;
+	}
+
+	@Override
+	public Optional<ConsoleMetrics> getMetrics() {
+		return config.getMetrics();
 	}
 
 	@Override
 	public void run(SwingConsolePane swingConsole) {
-		JepEngine engine = new JepEngine();
-		String jepIOClass = "import io\n" //
-				+ "\n" //
-				+ "class JepIO(io.RawIOBase):\n" //
-				+ "    def __init__(self, java_io):\n" //
-				+ "        super(JepIO, self).__init__()\n" //
-				+ "        self._java_io = java_io\n" //
-				+ "\n" //
-				+ "    def read(self, size=-1):\n" //
-				+ "        return self._java_io.read(size)\n" //
-				+ "\n" //
-				+ "    def readinto(self, b):\n" //
-				+ "        return self._java_io.readinto(b)\n" //
-				+ "\n" //
-				+ "    def write(self, b):\n" //
-				+ "        return self._java_io.write(b)\n";
+		long start = System.nanoTime();
+		PreparedEngine prepared = pool == null ? JepEnginePool.prepare(new JepEngine()) : pool.take();
+		config.getMetrics().ifPresent(
+				metrics -> metrics.record(Phase.CREATE_INTERPRETER, pool == null ? null : "pooled", start));
+		JepEngine engine = prepared.getEngine();
 		try {
 			// Redirect stdout so that print commands work.
-			engine.put("jep_stdout", new JepStdOut(swingConsole));
-			engine.eval("import sys");
-			engine.eval("sys.stdout = jep_stdout");
-			engine.eval("sys.stderr = jep_stdout");
-			engine.eval(jepIOClass);
-
-		} catch (ScriptException e) {
+			engine.putAsync("jep_java_stdout", new JepStdOut(swingConsole));
+			engine.evalBatchOnce(Arrays.asList(BUFFERED_STDOUT_CLASS,
+					"jep_stdout = JepBufferedStdOut(jep_java_stdout, " + FLUSH_LINES + ", " + FLUSH_CHARS + ", "
+							+ FLUSH_INTERVAL + ")",
+					"del jep_java_stdout", "sys.stdout = jep_stdout", "sys.stderr = jep_stdout")).get();
+		} catch (ExecutionException | InterruptedException e) {
 			throw new RuntimeException(e);
 		}
-		String banner = config.getBanner().map(str -> JepConsole.buildBanner(str, engine)).orElse(null);
-		JepConsoleRunModel runModel = new JepSwingConsoleRunModel(banner, JepCompleter.create(engine).orElse(null),
-				swingConsole, config.getHistoryFile().orElse(null));
+		JepConsoleRunModel runModel = new JepSwingConsoleRunModel(config.getBanner().orElse(null),
+				prepared.getCompleter().orElse(null), swingConsole, config.getHistoryFile().orElse(null),
+				config.getMetrics().orElse(null));
 		new JepConsole().run(engine, runModel, config.getStartupCommands());
 	}
 }
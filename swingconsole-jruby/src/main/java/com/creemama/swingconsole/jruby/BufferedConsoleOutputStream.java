@@ -0,0 +1,129 @@
+package com.creemama.swingconsole.jruby;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An output stream gathering the output of a runtime before handing it to the
+ * console, so that a loop calling {@code puts} costs one write to the console
+ * per buffer instead of one per call.
+ * <p>
+ * The buffer goes to the console once it is full, once output has waited for
+ * the flush interval, and on {@link #flush()}, which {@link JRubySwingConsole}
+ * calls before every prompt so that no output arrives after the prompt that
+ * follows it.
+ * </p>
+ * <p>
+ * This class is thread-safe.
+ * </p>
+ */
+class BufferedConsoleOutputStream extends OutputStream {
+	/**
+	 * The thread flushing output that has waited for the flush interval
+	 */
+	private static final ScheduledExecutorService FLUSHER;
+	static {
+		ScheduledThreadPoolExecutor flusher = new ScheduledThreadPoolExecutor(1, r -> {
+			Thread thread = new Thread(r, "BufferedConsoleOutputStream-flush");
+			thread.setDaemon(true);
+			return thread;
+		});
+		flusher.setKeepAliveTime(60L, TimeUnit.SECONDS);
+		flusher.allowCoreThreadTimeOut(true);
+		FLUSHER = flusher;
+	}
+
+	final private byte[] buffer;
+
+	/**
+	 * The number of bytes in the buffer; guarded by this
+	 */
+	private int count;
+
+	final private int flushInterval;
+
+	/**
+	 * Whether a timed flush is coming; guarded by this
+	 */
+	private boolean flushScheduled;
+
+	final private OutputStream target;
+
+	/**
+	 * Constructs a new {@link BufferedConsoleOutputStream} instance.
+	 *
+	 * @param target        the console output
+	 * @param size          the size of the buffer in bytes
+	 * @param flushInterval the most milliseconds output waits in the buffer;
+	 *                      {@code 0} waits until the buffer is full or flushed
+	 */
+	BufferedConsoleOutputStream(OutputStream target, int size, int flushInterval) {
+		this.buffer = new byte[size];
+		this.flushInterval = flushInterval;
+		this.target = target;
+	}
+
+	@Override
+	public synchronized void flush() throws IOException {
+		flushBuffer();
+		target.flush();
+	}
+
+	private void flushBuffer() throws IOException {
+		if (count > 0) {
+			target.write(buffer, 0, count);
+			count = 0;
+		}
+	}
+
+	private void scheduleFlush() {
+		if (!flushScheduled && flushInterval > 0) {
+			flushScheduled = true;
+			FLUSHER.schedule(this::timedFlush, flushInterval, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private synchronized void timedFlush() {
+		flushScheduled = false;
+		try {
+			flushBuffer();
+		} catch (IOException e) {
+			// The next write or flush fails the same way.
+		}
+	}
+
+	@Override
+	public synchronized void write(byte[] b, int off, int len) throws IOException {
+		if (off < 0 || len < 0 || off + len > b.length) {
+			throw new IndexOutOfBoundsException();
+		}
+		if (len >= 2 && b[off] == '=' && b[off + 1] == '>') {
+			// The console styles a write starting with IRB's "=>" as a result, so a
+			// result stays a write of its own.
+			flushBuffer();
+			target.write(b, off, len);
+			return;
+		}
+		if (len > buffer.length - count) {
+			flushBuffer();
+			if (len >= buffer.length) {
+				target.write(b, off, len);
+				return;
+			}
+		}
+		System.arraycopy(b, off, buffer, count, len);
+		count += len;
+		scheduleFlush();
+	}
+
+	@Override
+	public synchronized void write(int b) throws IOException {
+		if (count == buffer.length)
+			flushBuffer();
+		buffer[count++] = (byte) b;
+		scheduleFlush();
+	}
+}
@@ -1,33 +1,35 @@
 package com.creemama.swingconsole.jruby;
 
-import java.io.FileReader;
-import java.io.IOException;
-import java.io.Reader;
-import java.io.UncheckedIOException;
-import java.nio.charset.Charset;
+import java.util.IdentityHashMap;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 import org.jruby.Ruby;
+import org.jruby.embed.EmbedEvalUnit;
 import org.jruby.embed.ScriptingContainer;
 import org.jruby.internal.runtime.GlobalVariable;
 import org.jruby.internal.runtime.ValueAccessor;
 
 import com.creemama.swingconsole.ConsoleConfig;
 import com.creemama.swingconsole.ConsoleConfig.EvalFileStartupCommand;
+import com.creemama.swingconsole.ConsoleConfig.MapFileStartupCommand;
 import com.creemama.swingconsole.ConsoleConfig.PutStartupCommand;
 import com.creemama.swingconsole.ConsoleConfig.StartupCommand;
 import com.creemama.swingconsole.ConsoleConfig.StartupCommandVisitor;
+import com.creemama.swingconsole.ConsoleMetrics;
+import com.creemama.swingconsole.ConsoleMetrics.Phase;
 
 /**
  * A JRuby interactive Ruby (IRB) shell.
  */
 public class JRubyConsole {
-	static Optional<String> buildVersion(ConsoleConfig config, Ruby runtime) {
+	static Optional<String> buildVersion(ConsoleConfig config, ScriptingContainer container) {
 		String banner = config.getBanner().orElse(null);
 		if (banner.contains("{{VERSION}}")) {
 			String version;
 			try {
-				Object versionObj = runtime.evalScriptlet("JRUBY_VERSION");
+				Object versionObj = JRubyScriptCache.runScriptlet(container, "JRUBY_VERSION");
 				version = versionObj == null ? "?" : versionObj.toString();
 			} catch (RuntimeException e) {
 				version = "?";
@@ -37,34 +39,83 @@ public class JRubyConsole {
 		return Optional.of(banner);
 	}
 
-	public void run(ConsoleConfig config) {
-		// Read more about ScriptingContainer at
-		// https://github.com/jruby/jruby/wiki/RedBridge.
-		ScriptingContainer container = new ScriptingContainer();
+	/**
+	 * Runs the startup commands of a console in order, timing each one if the
+	 * console is timed. Independent files are parsed in parallel beforehand, and
+	 * files the runtime already parsed are not parsed again.
+	 */
+	static void runStartupCommands(ConsoleConfig config, ScriptingContainer container) {
+		ConsoleMetrics metrics = config.getMetrics().orElse(null);
+		Map<EvalFileStartupCommand, CompletableFuture<EmbedEvalUnit>> parsed = new IdentityHashMap<>();
+		for (StartupCommand command : config.getStartupCommands()) {
+			command.accept(new StartupCommandVisitor() {
+				@Override
+				public void visit(EvalFileStartupCommand command) {
+					if (command.isIndependent())
+						parsed.put(command, JRubyScriptCache.parseAsync(container, command.getFile()));
+				}
+
+				@Override
+				public void visit(PutStartupCommand command) {
+					// Do nothing.
+				}
+			});
+		}
 		for (StartupCommand command : config.getStartupCommands()) {
+			long start = System.nanoTime();
 			command.accept(new StartupCommandVisitor() {
 				@Override
 				public void visit(EvalFileStartupCommand command) {
-					try (Reader reader = new FileReader(command.getFile(), Charset.forName("UTF-8"))) {
-						container.runScriptlet(reader, command.getFile().getPath());
-					} catch (IOException e) {
-						throw new UncheckedIOException(e);
-					}
+					CompletableFuture<EmbedEvalUnit> script = parsed.get(command);
+					(script == null ? JRubyScriptCache.parse(container, command.getFile())
+							: JRubyScriptCache.join(script)).run();
+					if (metrics != null)
+						metrics.record(Phase.STARTUP_COMMAND, command.getFile().getPath(), start);
+				}
+
+				@Override
+				public void visit(MapFileStartupCommand command) {
+					// The runtime sees the mapped buffer itself, without a copy.
+					container.put(command.getVariableName(), command.map());
+					if (metrics != null)
+						metrics.record(Phase.STARTUP_COMMAND, command.getVariableName(), start);
 				}
 
 				@Override
 				public void visit(PutStartupCommand command) {
 					container.put(command.getVariableName(), command.getValue());
+					if (metrics != null)
+						metrics.record(Phase.STARTUP_COMMAND, command.getVariableName(), start);
 				}
 			});
 		}
+	}
+
+	public void run(ConsoleConfig config) {
+		ConsoleMetrics metrics = config.getMetrics().orElse(null);
+		// Read more about ScriptingContainer at
+		// https://github.com/jruby/jruby/wiki/RedBridge.
+		long start = System.nanoTime();
+		ScriptingContainer container = new ScriptingContainer();
 		Ruby runtime = container.getProvider().getRuntime();
+		if (metrics != null)
+			metrics.record(Phase.CREATE_INTERPRETER, null, start);
+		runStartupCommands(config, container);
+		start = System.nanoTime();
 		new JRubyConsoleHistory(config.getHistoryFile().orElse(null)).setUpHistory(System.out, runtime);
+		if (metrics != null)
+			metrics.record(Phase.LOAD_HISTORY, null, start);
 		runtime.getGlobalVariables().defineReadonly("$$",
 				new ValueAccessor(runtime.newFixnum(System.identityHashCode(runtime))), GlobalVariable.Scope.GLOBAL);
 		runtime.evalScriptlet(
 				"ARGV << '--readline' << '--prompt' << 'inf-ruby';" + "require 'irb'; require 'irb/completion';");
-		buildVersion(config, runtime).ifPresent(System.out::println);
+		start = System.nanoTime();
+		Optional<String> version = buildVersion(config, container);
+		if (metrics != null && version.isPresent())
+			metrics.record(Phase.BUILD_BANNER, null, start);
+		version.ifPresent(System.out::println);
+		if (metrics != null)
+			metrics.firstPrompt();
 		runtime.evalScriptlet("IRB.start");
 	}
 }
@@ -7,7 +7,8 @@ import java.io.PrintStream;
 import org.jruby.Ruby;
 import org.jruby.ext.readline.Readline;
 
-import jline.console.history.FileHistory;
+import com.creemama.swingconsole.MappedHistory;
+
 import jline.console.history.History;
 
 /**
@@ -23,30 +24,19 @@ class JRubyConsoleHistory {
 
 	History setUpHistory(PrintStream err, Ruby runtime) {
 		runtime.getLoadService().require("readline");
-		History history = Readline.getHistory(Readline.getHolder(runtime));
+		Readline.ConsoleHolder holder = Readline.getHolder(runtime);
 
 		if (historyFile == null)
-			return history;
+			return Readline.getHistory(holder);
 
 		try {
-			FileHistory fileHistory = new FileHistory(historyFile);
-
-			fileHistory.forEach(entry -> history.add(entry.value()));
-
-			Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-				try {
-					fileHistory.clear();
-					history.forEach(entry -> fileHistory.add(entry.value()));
-					fileHistory.flush();
-				} catch (IOException e) {
-					e.printStackTrace(err);
-				}
-			}, "JRuby History Writer"));
-
+			// The history writes each entry to the file as it is added, so there is
+			// nothing to save at exit.
+			Readline.setHistory(holder, new MappedHistory(historyFile));
 		} catch (IOException | RuntimeException e) {
 			e.printStackTrace(err);
 		}
 
-		return history;
+		return Readline.getHistory(holder);
 	}
 }
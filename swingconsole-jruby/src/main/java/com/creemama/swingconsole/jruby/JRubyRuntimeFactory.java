@@ -0,0 +1,318 @@
+package com.creemama.swingconsole.jruby;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.jruby.Ruby;
+import org.jruby.RubyInstanceConfig;
+import org.jruby.RubyInstanceConfig.CompileMode;
+import org.jruby.embed.LocalContextScope;
+import org.jruby.embed.ScriptingContainer;
+import org.jruby.internal.runtime.GlobalVariable;
+import org.jruby.internal.runtime.ValueAccessor;
+
+/**
+ * A source of JRuby runtimes booted ahead of time, with {@code readline}, IRB
+ * and IRB's completion already loaded, so that a {@link JRubySwingConsole}
+ * starts IRB without the seconds a cold runtime takes.
+ * <p>
+ * The factory keeps a number of runtimes ready and replaces each one taken with
+ * one booted in the background, one at a time. Every runtime has its own
+ * {@link ScriptingContainer} whose standard streams are pointed at the console
+ * that takes it.
+ * </p>
+ * <p>
+ * The options a factory is given apply to the {@link RubyInstanceConfig} of
+ * each of its runtimes only. Options JRuby reads once for the whole JVM, such
+ * as {@code -Djruby.compile.invokedynamic=true}, and options of the JVM itself,
+ * such as an AppCDS archive given by {@code -XX:SharedArchiveFile}, must be
+ * given on the command line.
+ * </p>
+ *
+ * <pre>
+ * JRubyRuntimeFactory factory = new JRubyRuntimeFactory(2, CompileMode.JIT,
+ * 		config -&gt; config.setJitThreshold(20));
+ * ...
+ * new SwingConsoleFrame("JRuby").run(new JRubySwingConsole(config, factory));
+ * </pre>
+ */
+public class JRubyRuntimeFactory implements Closeable {
+	/**
+	 * The phases of starting a runtime
+	 */
+	public enum Phase {
+		/**
+		 * Constructing the container and its runtime
+		 */
+		CREATE_RUNTIME,
+		/**
+		 * Requiring {@code readline}
+		 */
+		LOAD_READLINE,
+		/**
+		 * Requiring {@code irb} and {@code irb/completion}
+		 */
+		LOAD_IRB,
+		/**
+		 * Hooking the runtime into a console, which happens when it is taken
+		 */
+		ATTACH
+	}
+
+	/**
+	 * A booted runtime and the time each phase of starting it took
+	 */
+	public static class WarmRuntime {
+		final private ScriptingContainer container;
+
+		final private RedirectedOutputStream error;
+
+		final private RedirectedInputStream input;
+
+		final private Map<Phase, Long> nanos = Collections.synchronizedMap(new EnumMap<>(Phase.class));
+
+		final private RedirectedOutputStream output;
+
+		private WarmRuntime(ScriptingContainer container, RedirectedInputStream input, RedirectedOutputStream output,
+				RedirectedOutputStream error) {
+			this.container = container;
+			this.error = error;
+			this.input = input;
+			this.output = output;
+		}
+
+		/**
+		 * Points the runtime's standard streams at a console.
+		 */
+		void attach(InputStream in, OutputStream out) {
+			input.target = in;
+			output.target = out;
+			error.target = out;
+		}
+
+		ScriptingContainer getContainer() {
+			return container;
+		}
+
+		/**
+		 * Returns how long a phase of starting this runtime took.
+		 *
+		 * @param phase the phase
+		 * @return the nanoseconds the phase took or {@code -1} if it has not run
+		 */
+		public long getNanos(Phase phase) {
+			Long result = nanos.get(phase);
+			return result == null ? -1 : result;
+		}
+
+		Ruby getRuntime() {
+			return container.getProvider().getRuntime();
+		}
+
+		void record(Phase phase, long startNanos) {
+			nanos.put(phase, System.nanoTime() - startNanos);
+		}
+	}
+
+	/**
+	 * An input stream reading from the console that took the runtime
+	 */
+	private static class RedirectedInputStream extends InputStream {
+		volatile InputStream target = System.in;
+
+		@Override
+		public int available() throws IOException {
+			return target.available();
+		}
+
+		@Override
+		public int read() throws IOException {
+			return target.read();
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			return target.read(b, off, len);
+		}
+	}
+
+	/**
+	 * An output stream writing to the console that took the runtime
+	 */
+	private static class RedirectedOutputStream extends OutputStream {
+		volatile OutputStream target;
+
+		RedirectedOutputStream(OutputStream target) {
+			this.target = target;
+		}
+
+		@Override
+		public void flush() throws IOException {
+			target.flush();
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			target.write(b, off, len);
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			target.write(b);
+		}
+	}
+
+	/**
+	 * Boots a runtime whose standard streams write to {@link System#out} and
+	 * {@link System#err} until it is attached to a console.
+	 *
+	 * @param scope       the scope of the container
+	 * @param compileMode the compile mode or {@code null} for JRuby's default
+	 * @param configurer  the settings to apply to the configuration of the
+	 *                    runtime before it boots or {@code null} for none
+	 * @return the runtime
+	 */
+	static WarmRuntime boot(LocalContextScope scope, CompileMode compileMode,
+			Consumer<RubyInstanceConfig> configurer) {
+		long start = System.nanoTime();
+		ScriptingContainer container = new ScriptingContainer(scope);
+		if (compileMode != null)
+			container.setCompileMode(compileMode);
+		if (configurer != null)
+			configurer.accept(container.getProvider().getRubyInstanceConfig());
+		RedirectedInputStream input = new RedirectedInputStream();
+		RedirectedOutputStream output = new RedirectedOutputStream(System.out);
+		RedirectedOutputStream error = new RedirectedOutputStream(System.err);
+		container.setInput(input);
+		container.setOutput(new PrintStream(output));
+		container.setError(new PrintStream(error));
+		WarmRuntime warm = new WarmRuntime(container, input, output, error);
+
+		Ruby runtime = warm.getRuntime();
+		runtime.getGlobalVariables().defineReadonly("$$",
+				new ValueAccessor(runtime.newFixnum(System.identityHashCode(runtime))), GlobalVariable.Scope.GLOBAL);
+		warm.record(Phase.CREATE_RUNTIME, start);
+
+		start = System.nanoTime();
+		runtime.getLoadService().require("readline");
+		warm.record(Phase.LOAD_READLINE, start);
+
+		start = System.nanoTime();
+		runtime.evalScriptlet(
+				"ARGV << '--readline' << '--prompt' << 'inf-ruby';" + "require 'irb'; require 'irb/completion';");
+		warm.record(Phase.LOAD_IRB, start);
+		return warm;
+	}
+
+	/**
+	 * The thread booting runtimes, started when needed
+	 */
+	final private ExecutorService booter = new ThreadPoolExecutor(0, 1, 60L, TimeUnit.SECONDS,
+			new LinkedBlockingQueue<>(), r -> {
+				Thread thread = new Thread(r, "JRubyRuntimeFactory-boot");
+				thread.setDaemon(true);
+				return thread;
+			});
+
+	private boolean closed;
+
+	final private CompileMode compileMode;
+
+	final private Consumer<RubyInstanceConfig> configurer;
+
+	/**
+	 * The runtimes ready or booting, oldest first; guarded by this
+	 */
+	final private Deque<CompletableFuture<WarmRuntime>> runtimes = new ArrayDeque<>();
+
+	/**
+	 * Creates a factory with JRuby's default options and starts booting its
+	 * runtimes.
+	 *
+	 * @param size the number of runtimes to keep ready
+	 * @throws IllegalArgumentException if the size is not positive
+	 */
+	public JRubyRuntimeFactory(int size) {
+		this(size, null, null);
+	}
+
+	/**
+	 * Creates a factory and starts booting its runtimes.
+	 *
+	 * @param size        the number of runtimes to keep ready
+	 * @param compileMode the compile mode of the runtimes or {@code null} for
+	 *                    JRuby's default
+	 * @param configurer  the settings to apply to the configuration of each
+	 *                    runtime before it boots, such as its JIT threshold, or
+	 *                    {@code null} for none
+	 * @throws IllegalArgumentException if the size is not positive
+	 */
+	public JRubyRuntimeFactory(int size, CompileMode compileMode, Consumer<RubyInstanceConfig> configurer) {
+		if (size < 1)
+			throw new IllegalArgumentException("The size of the factory must be positive.");
+		this.compileMode = compileMode;
+		this.configurer = configurer;
+		for (int i = 0; i < size; i++)
+			runtimes.add(boot());
+	}
+
+	private CompletableFuture<WarmRuntime> boot() {
+		return CompletableFuture.supplyAsync(() -> boot(LocalContextScope.SINGLETHREAD, compileMode, configurer),
+				booter);
+	}
+
+	/**
+	 * Terminates the runtimes not yet taken, including those still booting.
+	 * Runtimes already taken are left running.
+	 */
+	@Override
+	public void close() {
+		synchronized (this) {
+			if (closed)
+				return;
+			closed = true;
+		}
+		for (CompletableFuture<WarmRuntime> runtime : runtimes)
+			runtime.thenAccept(warm -> warm.getContainer().terminate());
+		runtimes.clear();
+		booter.shutdown();
+	}
+
+	/**
+	 * Takes the oldest runtime, waiting for it to boot if needed, and starts
+	 * booting its replacement.
+	 *
+	 * @return the runtime
+	 * @throws IllegalStateException if the factory is closed
+	 * @throws RuntimeException      if the runtime failed to boot
+	 */
+	public WarmRuntime take() {
+		CompletableFuture<WarmRuntime> runtime;
+		synchronized (this) {
+			if (closed)
+				throw new IllegalStateException("The factory is closed.");
+			runtime = runtimes.poll();
+			runtimes.add(boot());
+		}
+		try {
+			return runtime.get();
+		} catch (ExecutionException | InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+	}
+}
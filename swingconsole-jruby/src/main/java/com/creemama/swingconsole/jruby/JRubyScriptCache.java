@@ -0,0 +1,184 @@
+package com.creemama.swingconsole.jruby;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jruby.embed.EmbedEvalUnit;
+import org.jruby.embed.ScriptingContainer;
+import org.jruby.javasupport.JavaEmbedUtils;
+
+import com.creemama.swingconsole.LruCache;
+
+/**
+ * The parsed startup scripts and scriptlets of each runtime, so that a console
+ * that evaluates a file or a scriptlet its runtime has already parsed, such as
+ * a second window sharing the singleton runtime, skips reading and parsing it.
+ * <p>
+ * A parsed script belongs to the runtime that parsed it, so the caches of each
+ * runtime are attributes of its {@link ScriptingContainer}. A file is parsed
+ * again once its modification time or length changes. Scriptlets are kept by
+ * source text, the {@link #SCRIPTLET_CACHE_SIZE} most recently used of them.
+ * </p>
+ */
+public final class JRubyScriptCache {
+	/**
+	 * A file as it was when parsed
+	 */
+	private static final class Key {
+		final private long lastModified;
+
+		final private long length;
+
+		final private String path;
+
+		Key(File file) {
+			this.lastModified = file.lastModified();
+			this.length = file.length();
+			this.path = file.getAbsolutePath();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key))
+				return false;
+			Key other = (Key) obj;
+			return lastModified == other.lastModified && length == other.length && path.equals(other.path);
+		}
+
+		@Override
+		public int hashCode() {
+			return path.hashCode() * 31 + Long.hashCode(lastModified ^ length);
+		}
+	}
+
+	private static final String ATTRIBUTE = JRubyScriptCache.class.getName();
+
+	private static final String SCRIPTLETS_ATTRIBUTE = ATTRIBUTE + ".scriptlets";
+
+	/**
+	 * The most parsed scriptlets kept for each runtime
+	 */
+	public static final int SCRIPTLET_CACHE_SIZE = 256;
+
+	private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+	/**
+	 * The threads parsing independent scripts, started when needed
+	 */
+	private static final ExecutorService PARSER;
+	static {
+		int threads = Runtime.getRuntime().availableProcessors();
+		ThreadPoolExecutor parser = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<>(), r -> {
+					Thread thread = new Thread(r, "JRubyScriptCache-parse-" + THREAD_COUNT.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+		parser.allowCoreThreadTimeOut(true);
+		PARSER = parser;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static ConcurrentMap<Key, EmbedEvalUnit> getScripts(ScriptingContainer container) {
+		synchronized (JRubyScriptCache.class) {
+			Object scripts = container.getAttribute(ATTRIBUTE);
+			if (scripts == null)
+				container.setAttribute(ATTRIBUTE, scripts = new ConcurrentHashMap<Key, EmbedEvalUnit>());
+			return (ConcurrentMap<Key, EmbedEvalUnit>) scripts;
+		}
+	}
+
+	/**
+	 * Returns the parsed scriptlets of the runtime of a container, whose hits
+	 * and misses count how often evaluating a scriptlet skipped parsing it.
+	 *
+	 * @param container the container
+	 * @return the cache of parsed scriptlets
+	 */
+	@SuppressWarnings("unchecked")
+	public static LruCache<String, EmbedEvalUnit> getScriptlets(ScriptingContainer container) {
+		synchronized (JRubyScriptCache.class) {
+			Object scriptlets = container.getAttribute(SCRIPTLETS_ATTRIBUTE);
+			if (scriptlets == null)
+				container.setAttribute(SCRIPTLETS_ATTRIBUTE,
+						scriptlets = new LruCache<String, EmbedEvalUnit>(SCRIPTLET_CACHE_SIZE));
+			return (LruCache<String, EmbedEvalUnit>) scriptlets;
+		}
+	}
+
+	/**
+	 * Evaluates a scriptlet, as {@link ScriptingContainer#runScriptlet(String)}
+	 * does, parsing it only if the runtime has not parsed it recently.
+	 *
+	 * @param container the container whose runtime runs the scriptlet
+	 * @param scriptlet the Ruby code
+	 * @return the value of the scriptlet converted to Java
+	 */
+	public static Object runScriptlet(ScriptingContainer container, String scriptlet) {
+		EmbedEvalUnit script = getScriptlets(container).computeIfAbsent(scriptlet, container::parse);
+		return JavaEmbedUtils.rubyToJava(script.run());
+	}
+
+	private JRubyScriptCache() {
+	}
+
+	/**
+	 * Returns a script parsed by the runtime of a container, parsing it if the
+	 * runtime has not parsed the file as it is now.
+	 *
+	 * @param container the container whose runtime runs the script
+	 * @param file      the Ruby script
+	 * @return the parsed script
+	 * @throws UncheckedIOException if the file cannot be read
+	 */
+	static EmbedEvalUnit parse(ScriptingContainer container, File file) {
+		ConcurrentMap<Key, EmbedEvalUnit> scripts = getScripts(container);
+		Key key = new Key(file);
+		EmbedEvalUnit script = scripts.get(key);
+		if (script != null)
+			return script;
+		try (InputStream in = new FileInputStream(file)) {
+			script = container.parse(in, file.getPath());
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		// Forget older versions of the file.
+		scripts.keySet().removeIf(old -> old.path.equals(key.path));
+		scripts.put(key, script);
+		return script;
+	}
+
+	/**
+	 * Parses a script in the background.
+	 *
+	 * @see #parse(ScriptingContainer, File)
+	 */
+	static CompletableFuture<EmbedEvalUnit> parseAsync(ScriptingContainer container, File file) {
+		return CompletableFuture.supplyAsync(() -> parse(container, file), PARSER);
+	}
+
+	/**
+	 * Waits for a script parsed in the background, throwing what parsing threw.
+	 */
+	static EmbedEvalUnit join(CompletableFuture<EmbedEvalUnit> script) {
+		try {
+			return script.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw e;
+		}
+	}
+}
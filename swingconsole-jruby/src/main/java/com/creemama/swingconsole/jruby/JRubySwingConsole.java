@@ -1,20 +1,17 @@
 package com.creemama.swingconsole.jruby;
 
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintStream;
-import java.io.Reader;
-import java.io.UncheckedIOException;
-import java.nio.charset.Charset;
+import java.util.Optional;
 
 import org.jruby.Ruby;
 import org.jruby.RubyIO;
 import org.jruby.RubyModule;
 import org.jruby.RubyString;
+import org.jruby.embed.LocalContextScope;
 import org.jruby.embed.ScriptingContainer;
 import org.jruby.ext.readline.Readline;
-import org.jruby.internal.runtime.GlobalVariable;
-import org.jruby.internal.runtime.ValueAccessor;
 import org.jruby.internal.runtime.methods.DynamicMethod;
 import org.jruby.internal.runtime.methods.JavaMethod;
 import org.jruby.runtime.ThreadContext;
@@ -22,12 +19,11 @@ import org.jruby.runtime.Visibility;
 import org.jruby.runtime.builtin.IRubyObject;
 
 import com.creemama.swingconsole.ConsoleConfig;
-import com.creemama.swingconsole.ConsoleConfig.EvalFileStartupCommand;
-import com.creemama.swingconsole.ConsoleConfig.PutStartupCommand;
-import com.creemama.swingconsole.ConsoleConfig.StartupCommand;
-import com.creemama.swingconsole.ConsoleConfig.StartupCommandVisitor;
+import com.creemama.swingconsole.ConsoleMetrics;
 import com.creemama.swingconsole.SwingConsole;
 import com.creemama.swingconsole.SwingConsolePane;
+import com.creemama.swingconsole.jruby.JRubyRuntimeFactory.Phase;
+import com.creemama.swingconsole.jruby.JRubyRuntimeFactory.WarmRuntime;
 
 import jline.console.completer.Completer;
 import jline.console.history.History;
@@ -46,15 +42,37 @@ import jline.console.history.History;
  * @see SwingConsole
  */
 public class JRubySwingConsole implements SwingConsole {
+	/**
+	 * The default number of milliseconds buffered output waits before going to
+	 * the console
+	 */
+	public static final int DEFAULT_OUTPUT_FLUSH_INTERVAL = 50;
 
 	final private ConsoleConfig config;
 
+	final private JRubyRuntimeFactory factory;
+
+	private volatile int outputBufferSize;
+
+	private volatile int outputFlushInterval = DEFAULT_OUTPUT_FLUSH_INTERVAL;
+
 	final private boolean redefineStandardIOStreams;
 
 	public JRubySwingConsole(ConsoleConfig config) {
 		this(config, false);
 	}
 
+	/**
+	 * Constructs a new {@link JRubySwingConsole} instance that takes a runtime
+	 * booted ahead of time from a factory.
+	 * 
+	 * @param config  configuration for this interactive console
+	 * @param factory the factory to take the runtime from
+	 */
+	public JRubySwingConsole(ConsoleConfig config, JRubyRuntimeFactory factory) {
+		this(config, factory, false);
+	}
+
 	/**
 	 * Constructs a new {@link JRubySwingConsole} instance.
 	 * 
@@ -63,7 +81,21 @@ public class JRubySwingConsole implements SwingConsole {
 	 *                                  {@code $stdout}, and {@code $stderr} streams
 	 */
 	public JRubySwingConsole(ConsoleConfig config, boolean redefineStandardIOStreams) {
+		this(config, null, redefineStandardIOStreams);
+	}
+
+	/**
+	 * Constructs a new {@link JRubySwingConsole} instance.
+	 * 
+	 * @param config                    configuration for this interactive console
+	 * @param factory                   the factory to take the runtime from or
+	 *                                  {@code null} to boot one
+	 * @param redefineStandardIOStreams whether to redefine JRuby's {@code $stdin},
+	 *                                  {@code $stdout}, and {@code $stderr} streams
+	 */
+	public JRubySwingConsole(ConsoleConfig config, JRubyRuntimeFactory factory, boolean redefineStandardIOStreams) {
 		this.config = config;
+		this.factory = factory;
 		this.redefineStandardIOStreams = redefineStandardIOStreams;
 	}
 
@@ -71,21 +103,29 @@ public class JRubySwingConsole implements SwingConsole {
 	 * Hooks the <code>SwingConsolePane</code> instance into the runtime, redefining
 	 * the <code>Readline</code> module so that it uses <code>tar</code>. This
 	 * method does not redefine the standard input-output streams. If you need that,
-	 * use {@link #hookIntoRuntimeWithStreams(Ruby, SwingConsolePane)}.
+	 * use {@link #hookIntoRuntimeWithStreams(Ruby, SwingConsolePane, OutputStream)}.
 	 *
 	 * @param runtime the Ruby runtime
 	 * @param console a text component displaying an interactive console
-	 * @see #hookIntoRuntimeWithStreams(Ruby, SwingConsolePane)
+	 * @param output  the output of the runtime, flushed before every prompt
+	 * @see #hookIntoRuntimeWithStreams(Ruby, SwingConsolePane, OutputStream)
 	 */
-	private void hookIntoRuntime(Ruby runtime, SwingConsolePane console) {
-		// Hack in to replace the usual readline with this.
-		runtime.getLoadService().require("readline");
+	private void hookIntoRuntime(Ruby runtime, SwingConsolePane console, OutputStream output) {
+		// Hack in to replace the usual readline with this. The runtime required
+		// readline, irb, and irb/completion when it booted; IRB looks the method up
+		// when it reads a line, so replacing it afterwards works.
 		RubyModule readlineM = runtime.getModule("Readline");
 
 		DynamicMethod readlineMethod = new JavaMethod.JavaMethodTwo(readlineM, Visibility.PUBLIC, "readline") {
 			@Override
 			public IRubyObject call(ThreadContext context, IRubyObject self, RubyModule clazz, String name,
 					IRubyObject arg0, IRubyObject arg1) {
+				try {
+					// Show everything the runtime wrote before the prompt.
+					output.flush();
+				} catch (IOException e) {
+					// Ignore.
+				}
 				String line = console.readLine(arg0.toString());
 				if (line != null) {
 					return RubyString.newUnicodeString(runtime, line);
@@ -97,11 +137,10 @@ public class JRubySwingConsole implements SwingConsole {
 		readlineM.addMethod("readline", readlineMethod);
 		readlineM.getSingletonClass().addMethod("readline", readlineMethod);
 
+		long start = System.nanoTime();
 		History hist = new JRubyConsoleHistory(config.getHistoryFile().orElse(null))
-				.setUpHistory(new PrintStream(console.getOutputStream()), runtime);
-
-		runtime.evalScriptlet(
-				"ARGV << '--readline' << '--prompt' << 'inf-ruby';" + "require 'irb'; require 'irb/completion';");
+				.setUpHistory(new PrintStream(output), runtime);
+		config.getMetrics().ifPresent(metrics -> metrics.record(ConsoleMetrics.Phase.LOAD_HISTORY, null, start));
 
 		Completer completer = Readline.getCompletor(Readline.getHolder(runtime));
 
@@ -114,59 +153,82 @@ public class JRubySwingConsole implements SwingConsole {
 	 * method also redefines the standard input-output streams accordingly.
 	 *
 	 * @param runtime the Ruby runtime
-	 * @see #hookIntoRuntime(Ruby, SwingConsolePane)
+	 * @param console a text component displaying an interactive console
+	 * @param output  the output of the runtime, flushed before every prompt
+	 * @see #hookIntoRuntime(Ruby, SwingConsolePane, OutputStream)
 	 */
-	private void hookIntoRuntimeWithStreams(Ruby runtime, SwingConsolePane console) {
-		hookIntoRuntime(runtime, console);
+	private void hookIntoRuntimeWithStreams(Ruby runtime, SwingConsolePane console, OutputStream output) {
+		hookIntoRuntime(runtime, console, output);
 
-		RubyIO in = new RubyIO(runtime, console.getInputStream());
+		RubyIO in = new RubyIO(runtime, console.getInputChannel());
 		runtime.getGlobalVariables().set("$stdin", in);
 
-		RubyIO out = new RubyIO(runtime, console.getOutputStream());
+		RubyIO out = new RubyIO(runtime, output);
 		out.sync_set(runtime.getTrue());
 		runtime.getGlobalVariables().set("$stdout", out);
 		runtime.getGlobalVariables().set("$stderr", out);
 	}
 
+	@Override
+	public Optional<ConsoleMetrics> getMetrics() {
+		return config.getMetrics();
+	}
+
+	/**
+	 * Returns the size of the buffer gathering the output of the runtime.
+	 *
+	 * @return the output buffer size in bytes; {@code 0} if output is not
+	 *         buffered
+	 * @see #setOutputBufferSize(int)
+	 */
+	public int getOutputBufferSize() {
+		return outputBufferSize;
+	}
+
+	/**
+	 * Returns the number of milliseconds buffered output waits before going to
+	 * the console.
+	 *
+	 * @return the output flush interval in milliseconds
+	 */
+	public int getOutputFlushInterval() {
+		return outputFlushInterval;
+	}
+
 	@Override
 	public void run(SwingConsolePane console) {
-		ScriptingContainer container = new ScriptingContainer();
-		container.setInput(console.getInputStream());
-		container.setOutput(new PrintStream(console.getOutputStream()));
-		container.setError(new PrintStream(console.getOutputStream()));
+		ConsoleMetrics metrics = config.getMetrics().orElse(null);
 
-		Ruby runtime = container.getProvider().getRuntime();
+		long start = System.nanoTime();
+		WarmRuntime warm = factory == null ? JRubyRuntimeFactory.boot(LocalContextScope.SINGLETON, null, null)
+				: factory.take();
+		if (metrics != null)
+			metrics.record(ConsoleMetrics.Phase.CREATE_INTERPRETER, factory == null ? null : "pooled", start);
+		ScriptingContainer container = warm.getContainer();
+		Ruby runtime = warm.getRuntime();
 
-		runtime.getGlobalVariables().defineReadonly("$$",
-				new ValueAccessor(runtime.newFixnum(System.identityHashCode(runtime))), GlobalVariable.Scope.GLOBAL);
+		OutputStream output = outputBufferSize > 0
+				? new BufferedConsoleOutputStream(console.getOutputStream(), outputBufferSize, outputFlushInterval)
+				: console.getOutputStream();
 
+		start = System.nanoTime();
+		warm.attach(console.getInputStream(), output);
 		if (redefineStandardIOStreams)
-			hookIntoRuntimeWithStreams(runtime, console);
+			hookIntoRuntimeWithStreams(runtime, console, output);
 		else
-			hookIntoRuntime(runtime, console);
-
-		for (StartupCommand command : config.getStartupCommands()) {
-			command.accept(new StartupCommandVisitor() {
-				@Override
-				public void visit(EvalFileStartupCommand command) {
-					try (Reader reader = new FileReader(command.getFile(), Charset.forName("UTF-8"))) {
-						container.runScriptlet(reader, command.getFile().getPath());
-					} catch (IOException e) {
-						throw new UncheckedIOException(e);
-					}
-				}
+			hookIntoRuntime(runtime, console, output);
+		warm.record(Phase.ATTACH, start);
 
-				@Override
-				public void visit(PutStartupCommand command) {
-					container.put(command.getVariableName(), command.getValue());
-				}
-			});
-		}
+		JRubyConsole.runStartupCommands(config, container);
 
-		JRubyConsole.buildVersion(config, runtime).ifPresent(banner -> {
+		start = System.nanoTime();
+		Optional<String> version = JRubyConsole.buildVersion(config, container);
+		if (metrics != null && version.isPresent())
+			metrics.record(ConsoleMetrics.Phase.BUILD_BANNER, null, start);
+		version.ifPresent(banner -> {
 			try {
-				console.getOutputStream().write((banner + "\n").getBytes("UTF-8"));
-				console.getOutputStream().flush();
+				output.write((banner + "\n").getBytes("UTF-8"));
+				output.flush();
 			} catch (IOException e) {
 				// Ignore.
 			}
@@ -174,4 +236,37 @@ public class JRubySwingConsole implements SwingConsole {
 
 		runtime.evalScriptlet("IRB.start");
 	}
+
+	/**
+	 * Sets the size of a buffer gathering what the runtime writes to
+	 * {@code $stdout} and {@code $stderr}, so that many small writes reach the
+	 * console as one. Buffered output goes to the console once the buffer is
+	 * full, after the flush interval, and always before a prompt. JRuby writes to
+	 * Java streams through a channel, so {@code $stdout.flush} does not reach the
+	 * buffer. Call this method before the console runs.
+	 *
+	 * @param size the output buffer size in bytes; {@code 0}, the default, writes
+	 *             every write straight to the console
+	 * @throws IllegalArgumentException if {@code size} is negative
+	 */
+	public void setOutputBufferSize(int size) {
+		if (size < 0)
+			throw new IllegalArgumentException("The output buffer size must not be negative: " + size);
+		outputBufferSize = size;
+	}
+
+	/**
+	 * Sets the number of milliseconds buffered output may wait before going to
+	 * the console. Call this method before the console runs.
+	 *
+	 * @param millis the output flush interval in milliseconds; {@code 0} waits
+	 *               until the buffer is full or flushed
+	 * @throws IllegalArgumentException if {@code millis} is negative
+	 * @see #setOutputBufferSize(int)
+	 */
+	public void setOutputFlushInterval(int millis) {
+		if (millis < 0)
+			throw new IllegalArgumentException("The output flush interval must not be negative: " + millis);
+		outputFlushInterval = millis;
+	}
 }
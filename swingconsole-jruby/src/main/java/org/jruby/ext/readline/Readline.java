@@ -39,6 +39,8 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
 
+import com.creemama.swingconsole.CompactHistory;
+
 import jline.*;
 import jline.console.ConsoleReader;
 import jline.console.CursorBuffer;
@@ -47,7 +49,6 @@ import jline.console.completer.Completer;
 import jline.console.completer.CompletionHandler;
 import jline.console.completer.FileNameCompleter;
 import jline.console.history.History;
-import jline.console.history.MemoryHistory;
 
 import org.jruby.*;
 import org.jruby.anno.JRubyMethod;
@@ -88,7 +89,7 @@ public class Readline {
     public static class ConsoleHolder {
         public ConsoleReader readline;
         transient volatile Completer currentCompletor;
-        public final History history = new MemoryHistory();
+        public volatile History history = new CompactHistory();
     }
 
     public static void load(Ruby runtime) {
@@ -173,6 +174,15 @@ public class Readline {
         return holder.history;
     }
 
+    /**
+     * Replaces the history of Readline and Readline::HISTORY, for example with
+     * one persisted to a file.
+     */
+    public static void setHistory(ConsoleHolder holder, History history) {
+        holder.history = history;
+        if (holder.readline != null) holder.readline.setHistory(history);
+    }
+
     public static ConsoleHolder getHolder(Ruby runtime) {
         return (ConsoleHolder) (runtime.getModule("Readline").dataGetStruct());
     }
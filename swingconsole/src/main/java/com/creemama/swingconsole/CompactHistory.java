@@ -0,0 +1,533 @@
+package com.creemama.swingconsole;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+import jline.console.history.History;
+import jline.console.history.MemoryHistory;
+
+/**
+ * A command history keeping its entries as UTF-8 in a shared byte arena.
+ * <p>
+ * Unlike {@link MemoryHistory}, which keeps a {@code String} per entry, this
+ * history stores every distinct entry once and each entry as the {@code int}
+ * id of its text, so repeating a command costs four bytes instead of another
+ * copy of it. An entry is decoded only when asked for. Texts no entry refers
+ * to any more, after entries are trimmed or removed, are dropped from the
+ * arena once they outnumber or outweigh the texts still in use.
+ * </p>
+ * <p>
+ * Like {@code MemoryHistory}, this history ignores an entry equal to the one
+ * before it unless told otherwise with {@link #setIgnoreDuplicates(boolean)}.
+ * It implements {@link RandomAccess} as {@link #get(int)} takes constant time.
+ * This class is thread-safe.
+ * </p>
+ */
+public class CompactHistory implements History, RandomAccess {
+	private static class EntryImpl implements Entry {
+		final private int index;
+
+		final private CharSequence value;
+
+		EntryImpl(int index, CharSequence value) {
+			this.index = index;
+			this.value = value;
+		}
+
+		@Override
+		public int index() {
+			return index;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d: %s", index, value);
+		}
+
+		@Override
+		public CharSequence value() {
+			return value;
+		}
+	}
+
+	private class EntriesIterator implements ListIterator<Entry> {
+		/**
+		 * The index, relative to the first entry, of the entry {@link #next()}
+		 * returns
+		 */
+		private int cursor;
+
+		EntriesIterator(int cursor) {
+			if (cursor < 0 || cursor > size())
+				throw new IndexOutOfBoundsException("Index: " + cursor + ", Size: " + size());
+			this.cursor = cursor;
+		}
+
+		@Override
+		public void add(Entry e) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public boolean hasNext() {
+			return cursor < size();
+		}
+
+		@Override
+		public boolean hasPrevious() {
+			return cursor > 0;
+		}
+
+		@Override
+		public Entry next() {
+			synchronized (CompactHistory.this) {
+				if (!hasNext())
+					throw new NoSuchElementException();
+				final int i = cursor++;
+				return new EntryImpl(offset + i, decode(entries[first + i]));
+			}
+		}
+
+		@Override
+		public int nextIndex() {
+			return offset + cursor;
+		}
+
+		@Override
+		public Entry previous() {
+			synchronized (CompactHistory.this) {
+				if (!hasPrevious())
+					throw new NoSuchElementException();
+				final int i = --cursor;
+				return new EntryImpl(offset + i, decode(entries[first + i]));
+			}
+		}
+
+		@Override
+		public int previousIndex() {
+			return offset + cursor - 1;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void set(Entry e) {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	public static final int DEFAULT_MAX_SIZE = MemoryHistory.DEFAULT_MAX_SIZE;
+
+	/**
+	 * The fewest unused texts worth compacting the arena for
+	 */
+	private static final int MIN_COMPACTION = 64;
+
+	/**
+	 * The UTF-8 bytes of every text, one after another in id order
+	 */
+	private byte[] arena = new byte[1024];
+
+	private int arenaSize;
+
+	private boolean autoTrim = false;
+
+	/**
+	 * The total length of the texts no entry refers to
+	 */
+	private int deadBytes;
+
+	/**
+	 * The number of texts no entry refers to
+	 */
+	private int deadTexts;
+
+	/**
+	 * The text id of every entry, trimmed ones before {@link #first}
+	 */
+	private int[] entries = new int[16];
+
+	/**
+	 * The index after the last entry in {@link #entries}
+	 */
+	private int end;
+
+	/**
+	 * The index in {@link #entries} of the first entry not trimmed
+	 */
+	private int first;
+
+	private boolean ignoreDuplicates = true;
+
+	/**
+	 * The index, relative to the first entry, of the current entry
+	 */
+	private int index;
+
+	private int maxSize = DEFAULT_MAX_SIZE;
+
+	/**
+	 * The number of entries trimmed, which {@link #index()} and the indices of
+	 * entries count from
+	 */
+	private int offset;
+
+	/**
+	 * The number of entries referring to each text
+	 */
+	private int[] references = new int[16];
+
+	/**
+	 * An open-addressing table of text ids plus one, {@code 0} marking a free
+	 * slot
+	 */
+	private int[] table = new int[32];
+
+	private int textCount;
+
+	private int[] textHashes = new int[16];
+
+	/**
+	 * The offset in the arena of each text, which ends where the next begins
+	 */
+	private int[] textStarts = new int[16];
+
+	@Override
+	public synchronized void add(CharSequence item) {
+		Objects.requireNonNull(item);
+		String line = item.toString();
+		if (autoTrim)
+			line = line.trim();
+		final byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+		if (ignoreDuplicates && size() > 0 && textEquals(entries[end - 1], bytes))
+			return;
+		if (end == entries.length) {
+			if (first > entries.length / 2) {
+				// Drop trimmed entries instead of growing.
+				System.arraycopy(entries, first, entries, 0, end - first);
+				end -= first;
+				first = 0;
+			} else {
+				entries = Arrays.copyOf(entries, end * 2);
+			}
+		}
+		entries[end++] = intern(bytes);
+		maybeResize();
+	}
+
+	private int addText(byte[] bytes, int hash) {
+		if (arenaSize + bytes.length > arena.length)
+			arena = Arrays.copyOf(arena, Math.max(arenaSize + bytes.length, arena.length * 2));
+		if (textCount == textStarts.length) {
+			textStarts = Arrays.copyOf(textStarts, textCount * 2);
+			textHashes = Arrays.copyOf(textHashes, textCount * 2);
+			references = Arrays.copyOf(references, textCount * 2);
+		}
+		System.arraycopy(bytes, 0, arena, arenaSize, bytes.length);
+		final int id = textCount++;
+		textStarts[id] = arenaSize;
+		textHashes[id] = hash;
+		references[id] = 1;
+		arenaSize += bytes.length;
+		return id;
+	}
+
+	@Override
+	public synchronized void clear() {
+		arenaSize = 0;
+		deadBytes = deadTexts = 0;
+		first = end = 0;
+		offset = index = 0;
+		Arrays.fill(table, 0);
+		textCount = 0;
+	}
+
+	/**
+	 * Drops the texts no entry refers to from the arena, renumbering the rest.
+	 */
+	private void compact() {
+		final int[] ids = new int[textCount];
+		final byte[] newArena = new byte[Math.max(1024, arenaSize - deadBytes)];
+		int newSize = 0;
+		int newCount = 0;
+		for (int id = 0; id < textCount; id++) {
+			if (references[id] == 0)
+				continue;
+			final int length = textLength(id);
+			System.arraycopy(arena, textStarts[id], newArena, newSize, length);
+			textStarts[newCount] = newSize;
+			textHashes[newCount] = textHashes[id];
+			references[newCount] = references[id];
+			ids[id] = newCount++;
+			newSize += length;
+		}
+		arena = newArena;
+		arenaSize = newSize;
+		textCount = newCount;
+		deadBytes = deadTexts = 0;
+		for (int i = first; i < end; i++)
+			entries[i] = ids[entries[i]];
+		rehash(table.length);
+	}
+
+	@Override
+	public synchronized CharSequence current() {
+		if (index >= size())
+			return "";
+		return decode(entries[first + index]);
+	}
+
+	private String decode(int id) {
+		return new String(arena, textStarts[id], textLength(id), StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public synchronized ListIterator<Entry> entries() {
+		return entries(offset);
+	}
+
+	@Override
+	public synchronized ListIterator<Entry> entries(int index) {
+		return new EntriesIterator(index - offset);
+	}
+
+	@Override
+	public synchronized CharSequence get(int index) {
+		final int i = index - offset;
+		if (i < 0 || i >= size())
+			throw new IndexOutOfBoundsException("Index: " + index);
+		return decode(entries[first + i]);
+	}
+
+	public synchronized int getMaxSize() {
+		return maxSize;
+	}
+
+	private static int hash(byte[] bytes) {
+		final int h = Arrays.hashCode(bytes);
+		return h ^ (h >>> 16);
+	}
+
+	@Override
+	public synchronized int index() {
+		return offset + index;
+	}
+
+	/**
+	 * Returns the id of a text, adding it to the arena if it is not there, and
+	 * counts a new reference to it.
+	 */
+	private int intern(byte[] bytes) {
+		final int hash = hash(bytes);
+		final int mask = table.length - 1;
+		int slot = hash & mask;
+		for (; table[slot] != 0; slot = (slot + 1) & mask) {
+			final int id = table[slot] - 1;
+			if (textHashes[id] == hash && textEquals(id, bytes)) {
+				if (references[id]++ == 0) {
+					deadTexts--;
+					deadBytes -= bytes.length;
+				}
+				return id;
+			}
+		}
+		final int id = addText(bytes, hash);
+		table[slot] = id + 1;
+		if (2 * textCount > table.length)
+			rehash(table.length * 2);
+		return id;
+	}
+
+	public synchronized boolean isAutoTrim() {
+		return autoTrim;
+	}
+
+	@Override
+	public synchronized boolean isEmpty() {
+		return size() == 0;
+	}
+
+	public synchronized boolean isIgnoreDuplicates() {
+		return ignoreDuplicates;
+	}
+
+	@Override
+	public Iterator<Entry> iterator() {
+		return entries();
+	}
+
+	private void maybeResize() {
+		while (size() > maxSize) {
+			release(entries[first]);
+			first++;
+			offset++;
+		}
+		index = size();
+	}
+
+	@Override
+	public synchronized boolean moveTo(int index) {
+		index -= offset;
+		if (index >= 0 && index < size()) {
+			this.index = index;
+			return true;
+		}
+		return false;
+	}
+
+	@Override
+	public synchronized void moveToEnd() {
+		index = size();
+	}
+
+	@Override
+	public synchronized boolean moveToFirst() {
+		if (size() > 0 && index != 0) {
+			index = 0;
+			return true;
+		}
+		return false;
+	}
+
+	@Override
+	public synchronized boolean moveToLast() {
+		final int lastEntry = size() - 1;
+		if (lastEntry >= 0 && lastEntry != index) {
+			index = lastEntry;
+			return true;
+		}
+		return false;
+	}
+
+	@Override
+	public synchronized boolean next() {
+		if (index >= size())
+			return false;
+		index++;
+		return true;
+	}
+
+	@Override
+	public synchronized boolean previous() {
+		if (index <= 0)
+			return false;
+		index--;
+		return true;
+	}
+
+	private void rehash(int capacity) {
+		table = new int[capacity];
+		final int mask = capacity - 1;
+		for (int id = 0; id < textCount; id++) {
+			int slot = textHashes[id] & mask;
+			while (table[slot] != 0)
+				slot = (slot + 1) & mask;
+			table[slot] = id + 1;
+		}
+	}
+
+	/**
+	 * Counts a reference to a text gone, compacting the arena if unused texts
+	 * take up more of it than used ones.
+	 */
+	private void release(int id) {
+		if (--references[id] > 0)
+			return;
+		deadTexts++;
+		deadBytes += textLength(id);
+		if (deadTexts >= MIN_COMPACTION && (2 * deadTexts > textCount || 2 * deadBytes > arenaSize))
+			compact();
+	}
+
+	@Override
+	public synchronized CharSequence remove(int i) {
+		// As MemoryHistory does, take i relative to the first entry.
+		if (i < 0 || i >= size())
+			throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size());
+		final int id = entries[first + i];
+		final String removed = decode(id);
+		System.arraycopy(entries, first + i + 1, entries, first + i, end - first - i - 1);
+		end--;
+		release(id);
+		return removed;
+	}
+
+	@Override
+	public synchronized CharSequence removeFirst() {
+		if (isEmpty())
+			throw new NoSuchElementException();
+		return remove(0);
+	}
+
+	@Override
+	public synchronized CharSequence removeLast() {
+		if (isEmpty())
+			throw new NoSuchElementException();
+		return remove(size() - 1);
+	}
+
+	@Override
+	public synchronized void replace(CharSequence item) {
+		removeLast();
+		add(item);
+	}
+
+	@Override
+	public synchronized void set(int index, CharSequence item) {
+		final int i = index - offset;
+		if (i < 0 || i >= size())
+			throw new IndexOutOfBoundsException("Index: " + index);
+		final int old = entries[first + i];
+		entries[first + i] = intern(item.toString().getBytes(StandardCharsets.UTF_8));
+		release(old);
+	}
+
+	public synchronized void setAutoTrim(boolean flag) {
+		autoTrim = flag;
+	}
+
+	public synchronized void setIgnoreDuplicates(boolean flag) {
+		ignoreDuplicates = flag;
+	}
+
+	public synchronized void setMaxSize(int maxSize) {
+		this.maxSize = maxSize;
+		maybeResize();
+	}
+
+	@Override
+	public synchronized int size() {
+		return end - first;
+	}
+
+	private boolean textEquals(int id, byte[] bytes) {
+		final int start = textStarts[id];
+		final int length = textLength(id);
+		if (length != bytes.length)
+			return false;
+		for (int i = 0; i < length; i++)
+			if (arena[start + i] != bytes[i])
+				return false;
+		return true;
+	}
+
+	private int textLength(int id) {
+		return (id + 1 < textCount ? textStarts[id + 1] : arenaSize) - textStarts[id];
+	}
+
+	@Override
+	public synchronized String toString() {
+		final StringBuilder sb = new StringBuilder();
+		for (Entry e : this)
+			sb.append(e.toString()).append('\n');
+		return sb.toString();
+	}
+}
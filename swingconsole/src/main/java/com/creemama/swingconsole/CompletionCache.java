@@ -0,0 +1,269 @@
+package com.creemama.swingconsole;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import jline.console.completer.Completer;
+
+/**
+ * The candidates of the last completion, indexed in sorted order so that the
+ * candidates of a longer word can be found by binary search instead of asking
+ * the completer again.
+ * <p>
+ * Once a completer has returned the candidates for a word, typing more letters
+ * of that word only narrows them: every candidate of the longer word is a
+ * candidate of the shorter one starting with the longer word. Completing a
+ * buffer that extends the completed buffer by letters, digits or underscores
+ * therefore costs two binary searches over the cached candidates, plus putting
+ * the candidates found back in the order the completer returned them. Candidates
+ * that do not start with the word they complete, such as those of a completer
+ * that corrects spelling, are never narrowed.
+ * </p>
+ * <p>
+ * This class is not thread-safe; only the event dispatch thread may use it.
+ * </p>
+ */
+class CompletionCache {
+	/**
+	 * The candidates a completer returned for a buffer
+	 */
+	static class Completion {
+		final String buffer;
+
+		/**
+		 * The candidates in the order the completer returned them, without
+		 * duplicates
+		 */
+		final String[] candidates;
+
+		final int position;
+
+		/**
+		 * The indexes in {@link #candidates} of the candidates in sorted order
+		 */
+		final int[] sorted;
+
+		Completion(String buffer, int position, String[] candidates) {
+			this.buffer = buffer;
+			this.position = position;
+			this.candidates = candidates;
+			this.sorted = sortedIndexes(candidates);
+		}
+	}
+
+	private static final int[] NO_INDEXES = new int[0];
+
+	private static final String[] NO_CANDIDATES = new String[0];
+
+	/**
+	 * The buffer the completer last completed or {@code null} if none
+	 */
+	private String buffer;
+
+	private String[] candidates = NO_CANDIDATES;
+
+	/**
+	 * The candidates of the last completion before narrowing, in the order of
+	 * the completer
+	 */
+	private String[] completed = NO_CANDIDATES;
+
+	private int from;
+
+	/**
+	 * Whether every candidate starts with the word the completer completed
+	 */
+	private boolean narrowable;
+
+	/**
+	 * The offset in the buffer of the word the completer completed
+	 */
+	private int position;
+
+	/**
+	 * The indexes in {@link #completed} of the candidates in sorted order
+	 */
+	private int[] sorted = NO_INDEXES;
+
+	private int to;
+
+	/**
+	 * Forgets the cached candidates, for example after a line is entered that may
+	 * have changed what the completer would return.
+	 */
+	void clear() {
+		buffer = null;
+		candidates = completed = NO_CANDIDATES;
+		sorted = NO_INDEXES;
+		from = to = 0;
+	}
+
+	/**
+	 * Asks a completer for the candidates of a buffer, in the completer's order
+	 * without duplicates. As completers may take long, callers should call this method
+	 * off the event dispatch thread and pass the result to
+	 * {@link #update(Completion)}.
+	 *
+	 * @param completer the completer to ask
+	 * @param buffer    the text to complete, ending at the cursor
+	 * @return the candidates
+	 */
+	static Completion complete(Completer completer, String buffer) {
+		final List<CharSequence> completed = new ArrayList<>();
+		final int position = completer.complete(buffer, buffer.length(), completed);
+		return new Completion(buffer, position, uniqueStrings(completed));
+	}
+
+	/**
+	 * Returns the offset in the buffer of the word last completed.
+	 *
+	 * @return the offset of the word
+	 */
+	int getPosition() {
+		return position;
+	}
+
+	/**
+	 * Narrows the cached candidates to those of a buffer extending the one last
+	 * completed. The candidates are those in {@link #getCandidates()} from
+	 * {@link #getFrom()} to {@link #getTo()}.
+	 *
+	 * @param buffer the text to complete, ending at the cursor
+	 * @return {@code false} if the completer must be asked instead
+	 */
+	boolean narrow(String buffer) {
+		if (!canNarrow(buffer))
+			return false;
+		final String word = buffer.substring(position);
+		final int low = lowerBound(completed, sorted, word);
+		final int high = prefixEnd(completed, sorted, low, word);
+		if (high - low == completed.length) {
+			candidates = completed;
+		} else {
+			final int[] indexes = Arrays.copyOfRange(sorted, low, high);
+			// Show the candidates in the order of the completer.
+			Arrays.sort(indexes);
+			candidates = new String[indexes.length];
+			for (int i = 0; i < indexes.length; i++)
+				candidates[i] = completed[indexes[i]];
+		}
+		from = 0;
+		to = candidates.length;
+		return true;
+	}
+
+	/**
+	 * Caches the candidates a completer returned for a buffer.
+	 *
+	 * @param completion the candidates returned by
+	 *                   {@link #complete(Completer, String)}
+	 */
+	void update(Completion completion) {
+		buffer = completion.buffer;
+		position = completion.position;
+		candidates = completed = completion.candidates;
+		sorted = completion.sorted;
+		narrowable = position >= 0 && startWith(candidates, buffer.substring(position));
+		from = 0;
+		to = candidates.length;
+	}
+
+	private boolean canNarrow(String buffer) {
+		if (this.buffer == null || !narrowable || !buffer.startsWith(this.buffer))
+			return false;
+		for (int i = this.buffer.length(); i < buffer.length(); i++) {
+			final char c = buffer.charAt(i);
+			if (!Character.isLetterOrDigit(c) && c != '_')
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the candidates in the order of the completer, shared with the
+	 * caller, who must not modify them.
+	 *
+	 * @return the cached candidates
+	 */
+	String[] getCandidates() {
+		return candidates;
+	}
+
+	/**
+	 * Returns the index of the first candidate of the last completion.
+	 *
+	 * @return the inclusive start index in {@link #getCandidates()}
+	 */
+	int getFrom() {
+		return from;
+	}
+
+	/**
+	 * Returns the index after the last candidate of the last completion.
+	 *
+	 * @return the exclusive end index in {@link #getCandidates()}
+	 */
+	int getTo() {
+		return to;
+	}
+
+	private static int lowerBound(String[] a, int[] sorted, String key) {
+		int low = 0;
+		int high = sorted.length;
+		while (low < high) {
+			final int mid = (low + high) >>> 1;
+			if (a[sorted[mid]].compareTo(key) < 0)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+
+	/**
+	 * Returns the index in {@code sorted} after the run of strings starting with
+	 * a prefix, which, the strings being sorted, begins at {@code from}.
+	 */
+	private static int prefixEnd(String[] a, int[] sorted, int from, String prefix) {
+		int low = from;
+		int high = sorted.length;
+		while (low < high) {
+			final int mid = (low + high) >>> 1;
+			if (a[sorted[mid]].startsWith(prefix))
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+
+	private static int[] sortedIndexes(String[] a) {
+		final Integer[] indexes = new Integer[a.length];
+		for (int i = 0; i < a.length; i++)
+			indexes[i] = i;
+		Arrays.sort(indexes, (i, j) -> a[i].compareTo(a[j]));
+		final int[] sorted = new int[a.length];
+		for (int i = 0; i < a.length; i++)
+			sorted[i] = indexes[i];
+		return sorted;
+	}
+
+	private static String[] uniqueStrings(List<CharSequence> candidates) {
+		if (candidates.isEmpty())
+			return NO_CANDIDATES;
+		final Set<String> unique = new LinkedHashSet<>();
+		for (CharSequence candidate : candidates)
+			unique.add(candidate.toString());
+		return unique.toArray(NO_CANDIDATES);
+	}
+
+	private static boolean startWith(String[] a, String prefix) {
+		for (String s : a)
+			if (!s.startsWith(prefix))
+				return false;
+		return true;
+	}
+}
@@ -0,0 +1,78 @@
+package com.creemama.swingconsole;
+
+import javax.swing.AbstractListModel;
+import javax.swing.ComboBoxModel;
+
+/**
+ * The model of the tab-completion popup, a view of a range of a candidate array
+ * whose contents change in one event.
+ * <p>
+ * Unlike refilling a {@link javax.swing.DefaultComboBoxModel} item by item,
+ * which fires an event per item, {@link #setItems(String[], int, int, int)}
+ * swaps in the new candidates without copying them and fires a single event.
+ * </p>
+ */
+class CompletionListModel extends AbstractListModel<String> implements ComboBoxModel<String> {
+	final private static long serialVersionUID = 1L;
+
+	private static final String[] NO_ITEMS = new String[0];
+
+	/**
+	 * The number of leading characters to strip from every item
+	 */
+	private int cutoff;
+
+	private int from;
+
+	private String[] items = NO_ITEMS;
+
+	private Object selectedItem;
+
+	private int size;
+
+	@Override
+	public String getElementAt(int index) {
+		final String item = items[from + index];
+		return cutoff == 0 ? item : item.substring(cutoff);
+	}
+
+	@Override
+	public Object getSelectedItem() {
+		return selectedItem;
+	}
+
+	@Override
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Replaces the items with a range of an array, which this model shares and
+	 * the caller must not modify, and selects the first of them.
+	 *
+	 * @param items  the array holding the items
+	 * @param from   the index of the first item
+	 * @param to     the index after the last item
+	 * @param cutoff the number of leading characters to strip from every item
+	 */
+	void setItems(String[] items, int from, int to, int cutoff) {
+		final int oldSize = size;
+		this.items = items;
+		this.from = from;
+		this.size = to - from;
+		this.cutoff = cutoff;
+		selectedItem = size == 0 ? null : getElementAt(0);
+		final int changed = Math.max(oldSize, size);
+		if (changed > 0)
+			fireContentsChanged(this, 0, changed - 1);
+	}
+
+	@Override
+	public void setSelectedItem(Object item) {
+		if (item == null ? selectedItem == null : item.equals(selectedItem))
+			return;
+		selectedItem = item;
+		// As DefaultComboBoxModel does, signal a changed selection with -1.
+		fireContentsChanged(this, -1, -1);
+	}
+}
@@ -1,6 +1,12 @@
 package com.creemama.swingconsole;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
@@ -14,8 +20,42 @@ public class ConsoleConfig {
 	public static class EvalFileStartupCommand implements StartupCommand {
 		final private File file;
 
-		EvalFileStartupCommand(File file) {
+		final private boolean independent;
+
+		EvalFileStartupCommand(File file, boolean independent) {
+			this.file = file;
+			this.independent = independent;
+		}
+
+		@Override
+		public void accept(StartupCommandVisitor visitor) {
+			visitor.visit(this);
+		}
+
+		public File getFile() {
+			return file;
+		}
+
+		/**
+		 * Returns whether the file does not depend on the commands before it, so
+		 * that it may be read and parsed before they run.
+		 *
+		 * @return {@code true} if the file may be prepared ahead of time
+		 * @see ConsoleConfig#eval(File, boolean)
+		 */
+		public boolean isIndependent() {
+			return independent;
+		}
+	}
+
+	public static class MapFileStartupCommand implements StartupCommand {
+		final private File file;
+
+		final private String variableName;
+
+		MapFileStartupCommand(File file, String variableName) {
 			this.file = file;
+			this.variableName = variableName;
 		}
 
 		@Override
@@ -26,6 +66,27 @@ public class ConsoleConfig {
 		public File getFile() {
 			return file;
 		}
+
+		public String getVariableName() {
+			return variableName;
+		}
+
+		/**
+		 * Maps the whole file into memory read-only. Pages load as they are first
+		 * read, and the mapping stays valid after this method closes the file.
+		 *
+		 * @return the contents of the file as a direct, read-only buffer in
+		 *         big-endian byte order
+		 * @throws IllegalArgumentException if the file is 2 GB or larger
+		 * @throws UncheckedIOException     if the file cannot be mapped
+		 */
+		public MappedByteBuffer map() {
+			try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+				return channel.map(MapMode.READ_ONLY, 0, channel.size());
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
 	}
 
 	public static class PutStartupCommand implements StartupCommand {
@@ -59,6 +120,13 @@ public class ConsoleConfig {
 	public interface StartupCommandVisitor {
 		void visit(EvalFileStartupCommand command);
 
+		/**
+		 * Visits a command mapping a file, which visitors that do not know the
+		 * command ignore.
+		 */
+		default void visit(MapFileStartupCommand command) {
+		}
+
 		void visit(PutStartupCommand command);
 	}
 
@@ -66,6 +134,8 @@ public class ConsoleConfig {
 
 	private File historyFile;
 
+	private ConsoleMetrics metrics;
+
 	final private List<StartupCommand> startupCommands;
 
 	public ConsoleConfig() {
@@ -78,7 +148,26 @@ public class ConsoleConfig {
 	}
 
 	public ConsoleConfig eval(File file) {
-		startupCommands.add(new EvalFileStartupCommand(Objects.requireNonNull(file)));
+		return eval(file, false);
+	}
+
+	/**
+	 * Evaluates a file at startup.
+	 * <p>
+	 * An independent file is one whose contents and parsing do not depend on the
+	 * commands before it, for example a file that no earlier command writes and
+	 * that uses no local variable an earlier {@link #put(String, Object)}
+	 * defines. Consoles may read and parse independent files in parallel before
+	 * running the commands in order.
+	 * </p>
+	 *
+	 * @param file        the file to evaluate
+	 * @param independent whether the file does not depend on the commands before
+	 *                    it
+	 * @return this configuration
+	 */
+	public ConsoleConfig eval(File file, boolean independent) {
+		startupCommands.add(new EvalFileStartupCommand(Objects.requireNonNull(file), independent));
 		return this;
 	}
 
@@ -86,6 +175,13 @@ public class ConsoleConfig {
 		return eval(new File(path));
 	}
 
+	/**
+	 * @see #eval(File, boolean)
+	 */
+	public ConsoleConfig evalFile(String path, boolean independent) {
+		return eval(new File(path), independent);
+	}
+
 	public Optional<String> getBanner() {
 		return Optional.ofNullable(banner);
 	}
@@ -94,6 +190,10 @@ public class ConsoleConfig {
 		return Optional.ofNullable(historyFile);
 	}
 
+	public Optional<ConsoleMetrics> getMetrics() {
+		return Optional.ofNullable(metrics);
+	}
+
 	public List<StartupCommand> getStartupCommands() {
 		return Collections.unmodifiableList(startupCommands);
 	}
@@ -103,6 +203,46 @@ public class ConsoleConfig {
 		return this;
 	}
 
+	/**
+	 * Maps a file read-only into memory at startup and assigns it to a variable
+	 * without reading or copying its contents, so that a console can work on
+	 * files much larger than it could load.
+	 * <p>
+	 * A JRuby console sees the {@link MappedByteBuffer} itself. A Jep console
+	 * sees a read-only NumPy {@code uint8} array sharing the mapped memory, which
+	 * {@code view} reinterprets as other types without copying.
+	 * </p>
+	 *
+	 * @param variableName the name of the variable
+	 * @param file         the file to map
+	 * @return this configuration
+	 * @see MapFileStartupCommand#map()
+	 */
+	public ConsoleConfig mapFile(String variableName, File file) {
+		startupCommands.add(new MapFileStartupCommand(Objects.requireNonNull(file),
+				Objects.requireNonNull(variableName)));
+		return this;
+	}
+
+	/**
+	 * @see #mapFile(String, File)
+	 */
+	public ConsoleConfig mapFile(String variableName, String path) {
+		return mapFile(variableName, new File(path));
+	}
+
+	/**
+	 * Times the phases of starting the console.
+	 *
+	 * @param metrics the metrics to record the timings in or {@code null} for
+	 *                none
+	 * @return this configuration
+	 */
+	public ConsoleConfig metrics(ConsoleMetrics metrics) {
+		this.metrics = metrics;
+		return this;
+	}
+
 	public ConsoleConfig put(String variableName, Object value) {
 		startupCommands.add(new PutStartupCommand(value, Objects.requireNonNull(variableName)));
 		return this;
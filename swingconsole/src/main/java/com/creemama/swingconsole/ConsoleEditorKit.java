@@ -0,0 +1,23 @@
+package com.creemama.swingconsole;
+
+import javax.swing.text.Document;
+import javax.swing.text.StyledEditorKit;
+import javax.swing.text.ViewFactory;
+
+/**
+ * A styled editor kit that renders a whole console document with a single
+ * {@link ConsoleView}.
+ */
+class ConsoleEditorKit extends StyledEditorKit {
+	final private static long serialVersionUID = 1L;
+
+	@Override
+	public Document createDefaultDocument() {
+		return new ScrollbackDocument();
+	}
+
+	@Override
+	public ViewFactory getViewFactory() {
+		return ConsoleView::new;
+	}
+}
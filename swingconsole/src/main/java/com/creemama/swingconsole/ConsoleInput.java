@@ -0,0 +1,68 @@
+package com.creemama.swingconsole;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The channel that hands lines entered into a console over to the thread
+ * reading them, either as whole lines or as the bytes of an
+ * {@link java.io.InputStream}.
+ * <p>
+ * Lines are sent from the event dispatch thread and read by the interpreter
+ * thread. An empty line signals the end of input. After {@link #shutdown()},
+ * lines not yet read are discarded, {@link #readLine()} returns an empty line,
+ * and {@link #read(byte[], int, int)} returns {@code -1}.
+ * </p>
+ */
+interface ConsoleInput {
+	static ConsoleInput create(TextAreaReadline.InputMode mode) {
+		switch (mode) {
+		case JOIN:
+			return new JoinConsoleInput();
+		case LOCK_FREE:
+			return new LockFreeConsoleInput();
+		default:
+			throw new IllegalArgumentException("Handle " + mode + ".");
+		}
+	}
+
+	/**
+	 * Returns the number of bytes of the current line not yet read.
+	 * 
+	 * @return the number of bytes readable without blocking
+	 */
+	int available();
+
+	/**
+	 * Reads bytes of the current line, blocking until a line is available.
+	 * 
+	 * @param b   the buffer into which to read
+	 * @param off the offset in {@code b} at which to start writing
+	 * @param len the maximum number of bytes to read
+	 * @return the number of bytes read or {@code -1} at the end of input
+	 */
+	int read(byte[] b, int off, int len);
+
+	/**
+	 * Reads bytes of the current line, blocking until a line is available.
+	 * 
+	 * @param dst the buffer into which to read
+	 * @return the number of bytes read or {@code -1} at the end of input
+	 */
+	int read(ByteBuffer dst);
+
+	/**
+	 * Reads the next line, blocking until one is available.
+	 * 
+	 * @return the next line or an empty line at the end of input
+	 */
+	String readLine();
+
+	/**
+	 * Sends a line to the reading thread.
+	 * 
+	 * @param line the line entered or an empty line to signal the end of input
+	 */
+	void sendLine(String line);
+
+	void shutdown();
+}
@@ -0,0 +1,183 @@
+package com.creemama.swingconsole;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Timings of the phases of starting an interactive console, registered with
+ * {@link ConsoleConfig#metrics(ConsoleMetrics)}.
+ * <p>
+ * Each phase that ends is kept for {@link #getTimings()} and, when the JVM
+ * supports Flight Recorder, committed as a {@code
+ * com.creemama.swingconsole.ConsolePhase} event. Use one instance per console
+ * launch; the times of the phases are relative to the first phase started.
+ * </p>
+ * <p>
+ * This class is thread-safe.
+ * </p>
+ */
+public class ConsoleMetrics {
+	/**
+	 * A phase of starting a console
+	 */
+	public enum Phase {
+		/**
+		 * Creating the window and the console pane
+		 */
+		CREATE_WINDOW,
+		/**
+		 * Creating and setting up the interpreter, or taking one created ahead of
+		 * time
+		 */
+		CREATE_INTERPRETER,
+		/**
+		 * Running one {@link ConsoleConfig.StartupCommand}
+		 */
+		STARTUP_COMMAND,
+		/**
+		 * Building the banner
+		 */
+		BUILD_BANNER,
+		/**
+		 * Loading the command history
+		 */
+		LOAD_HISTORY,
+		/**
+		 * Everything from the start of the first phase to the first prompt
+		 */
+		FIRST_PROMPT
+	}
+
+	/**
+	 * How long a phase took
+	 */
+	public static final class Timing {
+		final private String detail;
+
+		final private long durationNanos;
+
+		final private Phase phase;
+
+		final private long startNanos;
+
+		Timing(Phase phase, String detail, long startNanos, long durationNanos) {
+			this.detail = detail;
+			this.durationNanos = durationNanos;
+			this.phase = phase;
+			this.startNanos = startNanos;
+		}
+
+		/**
+		 * Returns what the phase worked on, such as the file a startup command
+		 * evaluated, or {@code null}.
+		 */
+		public String getDetail() {
+			return detail;
+		}
+
+		public long getDurationNanos() {
+			return durationNanos;
+		}
+
+		public Phase getPhase() {
+			return phase;
+		}
+
+		/**
+		 * Returns when the phase started, relative to the start of the first phase.
+		 */
+		public long getStartNanos() {
+			return startNanos;
+		}
+
+		@Override
+		public String toString() {
+			return phase + (detail == null ? "" : " " + detail) + ": " + durationNanos / 1_000_000 + " ms";
+		}
+	}
+
+	private static final boolean FLIGHT_RECORDER = isFlightRecorderAvailable();
+
+	private static boolean isFlightRecorderAvailable() {
+		try {
+			Class.forName("jdk.jfr.Event", false, ConsoleMetrics.class.getClassLoader());
+			return true;
+		} catch (ClassNotFoundException | LinkageError e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Whether the first prompt was recorded; guarded by this
+	 */
+	private boolean firstPrompt;
+
+	/**
+	 * The {@link System#nanoTime()} the first phase started at; guarded by this
+	 */
+	private long origin;
+
+	private boolean started;
+
+	final private List<Timing> timings = new ArrayList<>();
+
+	/**
+	 * Records that the first prompt is being shown, the first time it is called.
+	 */
+	public void firstPrompt() {
+		final long now = System.nanoTime();
+		final long start;
+		synchronized (this) {
+			if (firstPrompt || !started)
+				return;
+			firstPrompt = true;
+			start = origin;
+		}
+		record(Phase.FIRST_PROMPT, null, start, now);
+	}
+
+	/**
+	 * Returns the phases that have ended, in the order they ended.
+	 *
+	 * @return a snapshot of the timings
+	 */
+	public synchronized List<Timing> getTimings() {
+		return Collections.unmodifiableList(new ArrayList<>(timings));
+	}
+
+	/**
+	 * Records a phase that ended now.
+	 *
+	 * @param phase      the phase
+	 * @param detail     what the phase worked on or {@code null}
+	 * @param startNanos the {@link System#nanoTime()} the phase started at
+	 */
+	public void record(Phase phase, String detail, long startNanos) {
+		record(phase, detail, startNanos, System.nanoTime());
+	}
+
+	private void record(Phase phase, String detail, long startNanos, long endNanos) {
+		final Timing timing;
+		synchronized (this) {
+			start(startNanos);
+			timing = new Timing(phase, detail, startNanos - origin, endNanos - startNanos);
+			timings.add(timing);
+		}
+		if (FLIGHT_RECORDER)
+			ConsolePhaseEvent.commit(timing);
+	}
+
+	/**
+	 * Marks the start of launching a console, from which the first prompt is
+	 * timed, unless a phase started earlier.
+	 *
+	 * @param nanos the {@link System#nanoTime()} the launch started at
+	 */
+	public synchronized void start(long nanos) {
+		if (!started || nanos - origin < 0) {
+			origin = nanos;
+			started = true;
+		}
+	}
+}
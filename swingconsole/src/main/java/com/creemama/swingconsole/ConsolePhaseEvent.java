@@ -0,0 +1,48 @@
+package com.creemama.swingconsole;
+
+import com.creemama.swingconsole.ConsoleMetrics.Timing;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * The Flight Recorder event of a {@link ConsoleMetrics.Phase} that ended.
+ * <p>
+ * Only {@link ConsoleMetrics} loads this class, and only if the JVM has Flight
+ * Recorder.
+ * </p>
+ */
+@Name("com.creemama.swingconsole.ConsolePhase")
+@Label("Console Startup Phase")
+@Category("Swing Console")
+@Description("A phase of starting an interactive console")
+@StackTrace(false)
+class ConsolePhaseEvent extends jdk.jfr.Event {
+	static void commit(Timing timing) {
+		final ConsolePhaseEvent event = new ConsolePhaseEvent();
+		if (!event.isEnabled())
+			return;
+		event.phase = timing.getPhase().name();
+		event.detail = timing.getDetail();
+		event.elapsed = timing.getDurationNanos();
+		event.commit();
+	}
+
+	@Label("Detail")
+	String detail;
+
+	/**
+	 * How long the phase took; events reserve the name {@code duration} for the
+	 * time between {@code begin} and {@code end}
+	 */
+	@Label("Elapsed")
+	@Timespan(Timespan.NANOSECONDS)
+	long elapsed;
+
+	@Label("Phase")
+	String phase;
+}
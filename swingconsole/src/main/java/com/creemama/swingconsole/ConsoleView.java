@@ -0,0 +1,200 @@
+package com.creemama.swingconsole;
+
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Shape;
+
+import javax.swing.event.DocumentEvent;
+import javax.swing.text.AttributeSet;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Element;
+import javax.swing.text.JTextComponent;
+import javax.swing.text.PlainView;
+import javax.swing.text.Segment;
+import javax.swing.text.StyleConstants;
+import javax.swing.text.StyledDocument;
+import javax.swing.text.Utilities;
+import javax.swing.text.ViewFactory;
+
+/**
+ * A single view of a whole console document that lays out every line at the
+ * same height and paints only the lines intersecting the clip.
+ * <p>
+ * Unlike the paragraph, row and glyph views a {@link javax.swing.JTextPane}
+ * builds for every line, this view keeps no state per line. It finds the lines
+ * to paint, and the offset under a point, by dividing by the line height of the
+ * component's font, and it paints the runs of each line with their foreground,
+ * background, bold and italic attributes. The cost of painting and layout
+ * therefore depends on the number of visible lines, not the size of the
+ * scrollback.
+ * </p>
+ * <p>
+ * Lines do not wrap. The view is as wide as the widest line it has seen since
+ * its font last changed; it does not shrink as lines are evicted, which spares
+ * measuring the whole scrollback again.
+ * </p>
+ */
+class ConsoleView extends PlainView {
+	private final Font[] derivedFonts = new Font[4];
+
+	private Font derivedFrom;
+
+	private int longestWidth;
+
+	private Font measuredFont;
+
+	private final Segment text = new Segment();
+
+	ConsoleView(Element elem) {
+		super(elem);
+	}
+
+	/**
+	 * Draws the runs of a range of a line, each in its font and color.
+	 *
+	 * @param selectedColor the color of selected text, or {@code null} to draw
+	 *                      unselected text in the colors and background of its
+	 *                      runs
+	 */
+	@SuppressWarnings("deprecation")
+	private int drawRuns(Graphics g, int x, int y, int p0, int p1, Color selectedColor)
+			throws BadLocationException {
+		// The float replacements of getTabbedTextWidth and drawTabbedText need Java 9.
+		final StyledDocument doc = (StyledDocument) getDocument();
+		final Component host = getContainer();
+		while (p0 < p1) {
+			final Element run = doc.getCharacterElement(p0);
+			final int end = Math.min(run.getEndOffset(), p1);
+			final AttributeSet attrs = run.getAttributes();
+			doc.getText(p0, end - p0, text);
+			final Font font = getFont(host.getFont(), attrs);
+			g.setFont(font);
+			if (selectedColor == null && attrs.isDefined(StyleConstants.Background)) {
+				// Size the background with the font the run is drawn in.
+				final FontMetrics fm = g.getFontMetrics(font);
+				g.setColor(StyleConstants.getBackground(attrs));
+				g.fillRect(x, y - fm.getAscent(), Utilities.getTabbedTextWidth(text, fm, x, this, p0),
+						fm.getHeight());
+			}
+			if (selectedColor != null)
+				g.setColor(selectedColor);
+			else
+				g.setColor(attrs.isDefined(StyleConstants.Foreground) ? StyleConstants.getForeground(attrs)
+						: host.getForeground());
+			x = Utilities.drawTabbedText(text, x, y, g, this, p0);
+			p0 = end;
+		}
+		return x;
+	}
+
+	@Override
+	@SuppressWarnings("deprecation")
+	protected int drawSelectedText(Graphics g, int x, int y, int p0, int p1) throws BadLocationException {
+		// The float replacement of this method needs Java 9.
+		final Component host = getContainer();
+		if (!(getDocument() instanceof StyledDocument) || !(host instanceof JTextComponent))
+			return super.drawSelectedText(g, x, y, p0, p1);
+		// The highlighter has painted the selection; keep the fonts of the runs.
+		return drawRuns(g, x, y, p0, p1, ((JTextComponent) host).getSelectedTextColor());
+	}
+
+	@Override
+	@SuppressWarnings("deprecation")
+	protected int drawUnselectedText(Graphics g, int x, int y, int p0, int p1) throws BadLocationException {
+		// The float replacement of this method needs Java 9.
+		if (!(getDocument() instanceof StyledDocument))
+			return super.drawUnselectedText(g, x, y, p0, p1);
+		return drawRuns(g, x, y, p0, p1, null);
+	}
+
+	private Font getFont(Font base, AttributeSet attrs) {
+		if (base != derivedFrom) {
+			derivedFrom = base;
+			for (int i = 0; i < derivedFonts.length; i++)
+				derivedFonts[i] = null;
+		}
+		final int style = (StyleConstants.isBold(attrs) ? Font.BOLD : 0)
+				| (StyleConstants.isItalic(attrs) ? Font.ITALIC : 0);
+		if (style == base.getStyle())
+			return base;
+		Font font = derivedFonts[style];
+		if (font == null)
+			font = derivedFonts[style] = base.deriveFont(style);
+		return font;
+	}
+
+	@Override
+	public float getMaximumSpan(int axis) {
+		// Stretch to fill the viewport when lines are narrower than it.
+		return axis == X_AXIS ? Integer.MAX_VALUE : super.getMaximumSpan(axis);
+	}
+
+	@Override
+	public float getPreferredSpan(int axis) {
+		if (axis != X_AXIS)
+			return super.getPreferredSpan(axis);
+		final Component host = getContainer();
+		if (host == null)
+			return 0;
+		final Font font = host.getFont();
+		if (font != measuredFont) {
+			measuredFont = font;
+			longestWidth = 0;
+			final Element root = getElement();
+			for (int i = 0, n = root.getElementCount(); i < n; i++)
+				measure(root.getElement(i));
+		}
+		return longestWidth;
+	}
+
+	/**
+	 * Widens the view to fit the given line.
+	 *
+	 * @param line the line to measure
+	 * @return {@code true} if the view widened
+	 */
+	@SuppressWarnings("deprecation")
+	private boolean measure(Element line) {
+		// The float replacement of getTabbedTextWidth needs Java 9.
+		if (measuredFont == null)
+			// The first call to getPreferredSpan measures every line.
+			return false;
+		final int p0 = line.getStartOffset();
+		final int p1 = Math.min(line.getEndOffset(), getDocument().getLength());
+		try {
+			getDocument().getText(p0, p1 - p0, text);
+		} catch (BadLocationException e) {
+			return false;
+		}
+		final FontMetrics fm = getContainer().getFontMetrics(measuredFont);
+		final int width = Utilities.getTabbedTextWidth(text, fm, 0, this, p0);
+		if (width <= longestWidth)
+			return false;
+		longestWidth = width;
+		return true;
+	}
+
+	@Override
+	protected void updateDamage(DocumentEvent changes, Shape a, ViewFactory f) {
+		final Component host = getContainer();
+		final Element root = getElement();
+		final DocumentEvent.ElementChange ec = changes.getChange(root);
+		if (ec != null) {
+			for (Element line : ec.getChildrenAdded())
+				measure(line);
+			preferenceChanged(null, true, true);
+			host.repaint();
+			return;
+		}
+		final int index = root.getElementIndex(changes.getOffset());
+		if (measure(root.getElement(index)))
+			preferenceChanged(null, true, false);
+		if (a != null)
+			damageLineRange(index, index, a, host);
+		else
+			host.repaint();
+	}
+}
@@ -0,0 +1,231 @@
+package com.creemama.swingconsole;
+
+import java.util.Arrays;
+import java.util.ListIterator;
+import java.util.RandomAccess;
+
+import jline.console.history.History;
+import jline.console.history.History.Entry;
+
+/**
+ * A trigram index over the entries of a {@link History} answering which is the
+ * newest entry containing some text, for reverse incremental search.
+ * <p>
+ * Every entry is indexed under each sequence of three characters it contains.
+ * A search for text of three or more characters walks, newest first, the
+ * entries containing the rarest of its trigrams, skips those missing any of its
+ * other trigrams by binary search, and checks only the rest for the text, so a
+ * keystroke costs in proportion to the entries that could match instead of to
+ * the size of the history. Shorter text, which cannot be looked up, is found by
+ * scanning the entries newest first.
+ * </p>
+ * <p>
+ * The index catches up with the entries added to the history since the last
+ * {@link #update()} and starts over if entries were removed. Entries are read
+ * back from the history if it is {@link RandomAccess}, such as
+ * {@link CompactHistory} and {@link MappedHistory}, so that searching does not
+ * keep a decoded copy of every entry; otherwise the index keeps the text of the
+ * entries it indexed, and changing an entry in place is not noticed.
+ * </p>
+ * <p>
+ * This class is thread-safe, but the history must not change during an
+ * update.
+ * </p>
+ */
+class HistorySearch {
+	/**
+	 * The entries containing a trigram, in ascending order
+	 */
+	private static final class Postings {
+		int[] entries = new int[4];
+
+		int size;
+
+		void add(int entry) {
+			if (size > 0 && entries[size - 1] == entry)
+				return;
+			if (size == entries.length)
+				entries = Arrays.copyOf(entries, size * 2);
+			entries[size++] = entry;
+		}
+
+		boolean contains(int entry) {
+			return Arrays.binarySearch(entries, 0, size, entry) >= 0;
+		}
+
+		/**
+		 * Returns the position of the first entry not less than the given one.
+		 */
+		int lowerBound(int entry) {
+			final int i = Arrays.binarySearch(entries, 0, size, entry);
+			return i >= 0 ? i : -i - 1;
+		}
+	}
+
+	/**
+	 * The history index of the first entry indexed
+	 */
+	private int base;
+
+	/**
+	 * The history index after the last entry indexed
+	 */
+	private int end;
+
+	private final History history;
+
+	private long[] keys = new long[1024];
+
+	private Postings[] postings = new Postings[1024];
+
+	/**
+	 * The text of every entry indexed or {@code null} if read from the history
+	 */
+	private String[] texts;
+
+	private int trigrams;
+
+	HistorySearch(History history) {
+		this.history = history;
+		this.texts = history instanceof RandomAccess ? null : new String[1024];
+	}
+
+	private void clear() {
+		Arrays.fill(postings, null);
+		trigrams = 0;
+		if (texts != null)
+			Arrays.fill(texts, null);
+		base = end = 0;
+	}
+
+	/**
+	 * Returns the text of an entry indexed.
+	 *
+	 * @param entry the history index of the entry
+	 * @return the text of the entry or {@code null} if it is not indexed
+	 */
+	synchronized String get(int entry) {
+		final int i = entry - base;
+		return i >= 0 && i < end - base && entry >= firstIndex() ? text(entry) : null;
+	}
+
+	private Postings getPostings(long key, boolean create) {
+		final int mask = keys.length - 1;
+		int i = (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+		for (; postings[i] != null; i = (i + 1) & mask)
+			if (keys[i] == key)
+				return postings[i];
+		if (!create)
+			return null;
+		if (2 * (trigrams + 1) > keys.length) {
+			rehash();
+			return getPostings(key, true);
+		}
+		trigrams++;
+		keys[i] = key;
+		return postings[i] = new Postings();
+	}
+
+	private void index(int entry, String text) {
+		if (texts != null) {
+			final int i = entry - base;
+			if (i >= texts.length)
+				texts = Arrays.copyOf(texts, Math.max(i + 1, texts.length * 2));
+			texts[i] = text;
+		}
+		for (int j = 0; j + 3 <= text.length(); j++)
+			getPostings(trigram(text, j), true).add(entry);
+	}
+
+	private void rehash() {
+		final long[] oldKeys = keys;
+		final Postings[] oldPostings = postings;
+		keys = new long[oldKeys.length * 2];
+		postings = new Postings[oldPostings.length * 2];
+		final int mask = keys.length - 1;
+		for (int j = 0; j < oldKeys.length; j++) {
+			if (oldPostings[j] == null)
+				continue;
+			int i = (int) ((oldKeys[j] * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+			while (postings[i] != null)
+				i = (i + 1) & mask;
+			keys[i] = oldKeys[j];
+			postings[i] = oldPostings[j];
+		}
+	}
+
+	/**
+	 * Returns the newest entry containing some text.
+	 *
+	 * @param text   the text to find
+	 * @param before the history index after the newest entry to consider
+	 * @return the history index of the entry found or {@code -1} if none
+	 */
+	synchronized int search(String text, int before) {
+		update();
+		if (text.isEmpty())
+			return -1;
+		final int first = Math.max(base, firstIndex());
+		before = Math.min(before, end);
+		if (text.length() < 3) {
+			for (int entry = before - 1; entry >= first; entry--)
+				if (text(entry).contains(text))
+					return entry;
+			return -1;
+		}
+		Postings rarest = null;
+		final Postings[] all = new Postings[text.length() - 2];
+		for (int j = 0; j < all.length; j++) {
+			all[j] = getPostings(trigram(text, j), false);
+			if (all[j] == null)
+				return -1;
+			if (rarest == null || all[j].size < rarest.size)
+				rarest = all[j];
+		}
+		candidates: for (int i = rarest.lowerBound(before) - 1; i >= 0; i--) {
+			final int entry = rarest.entries[i];
+			if (entry < first)
+				return -1;
+			for (Postings p : all)
+				if (p != rarest && !p.contains(entry))
+					continue candidates;
+			if (text(entry).contains(text))
+				return entry;
+		}
+		return -1;
+	}
+
+	private String text(int entry) {
+		return texts != null ? texts[entry - base] : history.get(entry).toString();
+	}
+
+	/**
+	 * Returns the history index of the oldest entry of the history.
+	 */
+	private int firstIndex() {
+		return history.entries().nextIndex();
+	}
+
+	private static long trigram(String text, int i) {
+		return (long) text.charAt(i) << 32 | (long) text.charAt(i + 1) << 16 | text.charAt(i + 2);
+	}
+
+	/**
+	 * Indexes the entries added to the history since the last update.
+	 */
+	synchronized void update() {
+		final int first = firstIndex();
+		final int size = history.size();
+		// Start over if entries were removed, or once more entries were trimmed from
+		// the history than it keeps.
+		if (first + size < end || first < base || first - base > Math.max(size, 1024))
+			clear();
+		if (end == 0)
+			base = end = first;
+		for (ListIterator<Entry> i = history.entries(Math.max(end, first)); i.hasNext();) {
+			final Entry entry = i.next();
+			index(entry.index(), entry.value().toString());
+		}
+		end = first + size;
+	}
+}
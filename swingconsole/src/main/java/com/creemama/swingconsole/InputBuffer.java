@@ -0,0 +1,138 @@
+package com.creemama.swingconsole;
+
+import static com.headius.backport9.buffer.Buffers.clearBuffer;
+import static com.headius.backport9.buffer.Buffers.flipBuffer;
+import static com.headius.backport9.buffer.Buffers.limitBuffer;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The UTF-8 bytes of the input line being read.
+ * <p>
+ * A line is encoded a chunk at a time into a reusable direct buffer as reads
+ * drain it, so reading a line, however long, allocates nothing but a wrapper
+ * around the line and never holds more than one chunk of its bytes.
+ * </p>
+ * <p>
+ * This class is not thread-safe; only the thread reading input may use it.
+ * </p>
+ */
+class InputBuffer {
+	static final int CAPACITY = 8192;
+
+	private final ByteBuffer bytes = flipBuffer(ByteBuffer.allocateDirect(CAPACITY));
+
+	/**
+	 * The characters of the line not yet encoded or {@code null} if all are
+	 */
+	private CharBuffer chars;
+
+	private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+			.onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+	/**
+	 * Returns the number of bytes of the line not yet read, whether or not they
+	 * are encoded yet.
+	 *
+	 * @return the number of bytes remaining in the line
+	 */
+	int available() {
+		return bytes.remaining() + (chars == null ? 0 : encodedLength(chars));
+	}
+
+	/**
+	 * Returns the number of bytes the encoder turns the remaining characters
+	 * into, without encoding them.
+	 */
+	private static int encodedLength(CharBuffer chars) {
+		int length = 0;
+		for (int i = chars.position(), end = chars.limit(); i < end; i++) {
+			char c = chars.get(i);
+			if (c < 0x80) {
+				length++;
+			} else if (c < 0x800) {
+				length += 2;
+			} else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(chars.get(i + 1))) {
+				length += 4;
+				i++;
+			} else if (Character.isSurrogate(c)) {
+				// The encoder replaces a lone surrogate with '?'.
+				length++;
+			} else {
+				length += 3;
+			}
+		}
+		return length;
+	}
+
+	private void fill() {
+		if (bytes.hasRemaining() || chars == null)
+			return;
+		clearBuffer(bytes);
+		encoder.encode(chars, bytes, true);
+		if (!chars.hasRemaining()) {
+			encoder.flush(bytes);
+			chars = null;
+		}
+		flipBuffer(bytes);
+	}
+
+	/**
+	 * Returns whether bytes of the line remain to be read.
+	 *
+	 * @return {@code true} if the line is not read completely
+	 */
+	boolean hasRemaining() {
+		return bytes.hasRemaining() || chars != null;
+	}
+
+	/**
+	 * Reads bytes of the line.
+	 *
+	 * @param b   the buffer into which to read
+	 * @param off the offset in {@code b} at which to start writing
+	 * @param len the maximum number of bytes to read
+	 * @return the number of bytes read
+	 */
+	int read(byte[] b, int off, int len) {
+		fill();
+		final int n = Math.min(len, bytes.remaining());
+		bytes.get(b, off, n);
+		return n;
+	}
+
+	/**
+	 * Reads bytes of the line.
+	 *
+	 * @param dst the buffer into which to read
+	 * @return the number of bytes read
+	 */
+	int read(ByteBuffer dst) {
+		fill();
+		final int n = Math.min(dst.remaining(), bytes.remaining());
+		if (n == bytes.remaining()) {
+			dst.put(bytes);
+		} else {
+			final int limit = bytes.limit();
+			limitBuffer(bytes, bytes.position() + n);
+			dst.put(bytes);
+			limitBuffer(bytes, limit);
+		}
+		return n;
+	}
+
+	/**
+	 * Starts reading a new line, discarding what remains of the current one.
+	 *
+	 * @param line the line to read
+	 */
+	void start(String line) {
+		flipBuffer(clearBuffer(bytes));
+		encoder.reset();
+		chars = CharBuffer.wrap(line);
+	}
+}
@@ -29,8 +29,13 @@
 package com.creemama.swingconsole;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Arrays;
 import java.util.concurrent.Executor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * <p>
@@ -45,11 +50,79 @@ public final class Join {
         }
     };
 
+    /**
+     * The executor {@link Spec#createJoin()} uses: a shared pool of up to
+     * {@code max(4, processors)} daemon threads that stay alive a minute
+     * after their last task. Reactions may block on one another, so rather
+     * than queueing behind busy threads, tasks beyond the pool's bound each
+     * get a thread of their own like {@link #TRIVIAL_EXECUTOR}.
+     */
+    public static final Executor DEFAULT_EXECUTOR;
+    static {
+        final ThreadFactory threadFactory = new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(Runnable command) {
+                final Thread thread = new Thread(command, "Join-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+        DEFAULT_EXECUTOR = new ThreadPoolExecutor(0, Math.max(4, Runtime.getRuntime().availableProcessors()),
+                60L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), threadFactory,
+                new ThreadPoolExecutor.AbortPolicy() {
+                    @Override
+                    public void rejectedExecution(Runnable command, ThreadPoolExecutor executor) {
+                        threadFactory.newThread(command).start();
+                    }
+                });
+    }
+
     private final Executor executor;
-    private final LinkedList<Object>[] writes;
+    private final Queue[] writes;
     private final long asyncMask;
     private long mask = 0;
     private final Reaction[][] reactionsPerChannel;
+    /**
+     * Reusable argument arrays for the {@link FastReaction}s of each channel,
+     * in the same order as {@link #reactionsPerChannel}, or null while a
+     * reaction dispatching outside the lock borrows one; guarded by this
+     */
+    private final Object[][][] fastArgsPerChannel;
+
+    /**
+     * An array-backed FIFO queue of the messages written to a channel.
+     */
+    private static final class Queue {
+        private Object[] elements = new Object[4];
+        private int head = 0;
+        private int size = 0;
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        void addLast(Object element) {
+            if (size == elements.length) {
+                final Object[] grown = new Object[size << 1];
+                final int headLength = size - head;
+                System.arraycopy(elements, head, grown, 0, headLength);
+                System.arraycopy(elements, 0, grown, headLength, head);
+                elements = grown;
+                head = 0;
+            }
+            elements[(head + size) & (elements.length - 1)] = element;
+            ++size;
+        }
+
+        Object removeFirst() {
+            final Object element = elements[head];
+            elements[head] = null;
+            head = (head + 1) & (elements.length - 1);
+            --size;
+            return element;
+        }
+    }
 
     public static class Spec {
         private ArrayList<ArrayList<Reaction>> reactionsPerChannel = new ArrayList<ArrayList<Reaction>>();
@@ -88,7 +161,7 @@ public final class Join {
         }
 
         public Join createJoin() {
-            return createJoin(TRIVIAL_EXECUTOR);
+            return createJoin(DEFAULT_EXECUTOR);
         }
 
         private static final Reaction[] EMPTY_REACTIONS = new Reaction[0];
@@ -212,37 +285,60 @@ public final class Join {
     }
 
     private Join(final long asyncMask, final Reaction[][] reactionsPerChannel, Executor executor) {
-        @SuppressWarnings("unchecked")
-        final LinkedList<Object>[] writes = new LinkedList[reactionsPerChannel.length];
+        final Queue[] writes = new Queue[reactionsPerChannel.length];
+        final Object[][][] fastArgsPerChannel = new Object[reactionsPerChannel.length][][];
         for ( int i = 0 ; i < writes.length ; ++i ) {
-            if ( reactionsPerChannel[i] != null ) {
-                writes[i] = new LinkedList<>();
+            final Reaction[] reactions = reactionsPerChannel[i];
+            if ( reactions != null ) {
+                writes[i] = new Queue();
+                fastArgsPerChannel[i] = new Object[reactions.length][];
+                for ( int j = 0 ; j < reactions.length ; ++j ) {
+                    if ( reactions[j] instanceof FastReaction ) {
+                        fastArgsPerChannel[i][j] = new Object[reactions[j].indices.length];
+                    }
+                }
             }
         }
         this.asyncMask = asyncMask;
         this.reactionsPerChannel = reactionsPerChannel;
         this.writes = writes;
+        this.fastArgsPerChannel = fastArgsPerChannel;
         this.executor = executor;
     }
 
     private void sendRaw(int index, Object message) {
         Reaction selectedReaction = null;
         Object[] args = null;
+        Object[][] fastArgs = null;
+        int fastIndex = -1;
         synchronized (this) {
-            final LinkedList<Object> writing = writes[index];
+            final Queue writing = writes[index];
             if ( writing == null ) {
                 throw new IndexOutOfBoundsException();
             }
             writing.addLast(message);
             mask |= 1L << index;
             final Reaction[] reactions = reactionsPerChannel[index];
-            for (Reaction reaction: reactions) {
+            for ( int r = 0 ; r < reactions.length ; ++r ) {
+                final Reaction reaction = reactions[r];
                 if ( ( reaction.mask & mask ) == reaction.mask ) {
                     final int[] indices = reaction.indices;
-                    args = new Object[indices.length];
+                    if ( reaction instanceof FastReaction ) {
+                        // Borrow this channel's array for the reaction; a send
+                        // racing the dispatch below falls back to a fresh array.
+                        args = fastArgsPerChannel[index][r];
+                        if ( args != null ) {
+                            fastArgs = fastArgsPerChannel[index];
+                            fastIndex = r;
+                            fastArgs[r] = null;
+                        }
+                    }
+                    if ( args == null ) {
+                        args = new Object[indices.length];
+                    }
                     for ( int i = 0 ; i < indices.length ; ++i ) {
                         final int readIndex = indices[i];
-                        final LinkedList<Object> reading = writes[readIndex];
+                        final Queue reading = writes[readIndex];
                         args[i] = reading.removeFirst();
                         if (reading.isEmpty()) {
                             mask &= ~(1L << readIndex);
@@ -254,7 +350,18 @@ public final class Join {
             }
         }
         if ( selectedReaction != null ) {
-            selectedReaction.dispatch(this, args);
+            // Reactions, fast ones included, run outside the lock so that they
+            // may send to this join or block without holding up other senders.
+            try {
+                selectedReaction.dispatch(this, args);
+            } finally {
+                if ( fastArgs != null ) {
+                    Arrays.fill(args, null);
+                    synchronized (this) {
+                        fastArgs[fastIndex] = args;
+                    }
+                }
+            }
         }
     }
 
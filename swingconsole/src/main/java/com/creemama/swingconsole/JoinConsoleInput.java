@@ -0,0 +1,180 @@
+package com.creemama.swingconsole;
+
+import java.nio.ByteBuffer;
+
+import com.creemama.swingconsole.TextAreaReadline.Channel;
+
+/**
+ * A {@link ConsoleInput} built on a {@link Join}.
+ * <p>
+ * The original code for this class comes from <a href=
+ * "https://github.com/jruby/jruby-readline/blob/80c8a97cc595837ec8e89154395d3f4a6ed2eee7/src/main/java/org/jruby/demo/readline/TextAreaReadline.java">JRuby-Readline's
+ * TextAreaReadline</a>.
+ * </p>
+ */
+class JoinConsoleInput implements ConsoleInput {
+	private static class ReadRequest {
+		public final byte[] b;
+		public final ByteBuffer dst;
+		public final int off;
+		public final int len;
+
+		public ReadRequest(byte[] b, int off, int len) {
+			this.b = b;
+			this.dst = null;
+			this.off = off;
+			this.len = len;
+		}
+
+		public ReadRequest(ByteBuffer dst) {
+			this.b = null;
+			this.dst = dst;
+			this.off = 0;
+			this.len = 0;
+		}
+
+		public int perform(Join join, InputBuffer buffer) {
+			final int read = dst == null ? buffer.read(b, off, len) : buffer.read(dst);
+			if (buffer.hasRemaining()) {
+				join.send(Channel.BUFFER, buffer);
+			} else {
+				join.send(Channel.EMPTY, buffer);
+			}
+			return read;
+		}
+	}
+
+	private static final Join.Spec INPUT_SPEC = new Join.Spec() {
+		{
+			addReaction(new Join.FastReaction(Channel.SHUTDOWN, Channel.BUFFER) {
+				@Override
+				public void react(Join join, Object[] args) {
+					join.send(Channel.FINISHED, null);
+				}
+			});
+			addReaction(new Join.FastReaction(Channel.SHUTDOWN, Channel.EMPTY) {
+				@Override
+				public void react(Join join, Object[] args) {
+					join.send(Channel.FINISHED, null);
+				}
+			});
+			addReaction(new Join.FastReaction(Channel.SHUTDOWN, Channel.FINISHED) {
+				@Override
+				public void react(Join join, Object[] args) {
+					join.send(Channel.FINISHED, null);
+				}
+			});
+
+			addReaction(new Join.FastReaction(Channel.FINISHED, Channel.LINE) {
+				@Override
+				public void react(Join join, Object[] args) {
+					join.send(Channel.FINISHED, null);
+				}
+			});
+
+			addReaction(new Join.SyncReaction(Channel.AVAILABLE, Channel.BUFFER) {
+				@Override
+				public Object react(Join join, Object[] args) {
+					InputBuffer buffer = (InputBuffer) args[1];
+					join.send(Channel.BUFFER, buffer);
+					return buffer.available();
+				}
+			});
+			addReaction(new Join.SyncReaction(Channel.AVAILABLE, Channel.EMPTY) {
+				@Override
+				public Object react(Join join, Object[] args) {
+					join.send(Channel.EMPTY, args[1]);
+					return 0;
+				}
+			});
+			addReaction(new Join.SyncReaction(Channel.AVAILABLE, Channel.FINISHED) {
+				@Override
+				public Object react(Join join, Object[] args) {
+					join.send(Channel.FINISHED, null);
+					return 0;
+				}
+			});
+
+			addReaction(new Join.SyncReaction(Channel.READ, Channel.BUFFER) {
+				@Override
+				public Object react(Join join, Object[] args) {
+					return ((ReadRequest) args[0]).perform(join, (InputBuffer) args[1]);
+				}
+			});
+			addReaction(new Join.SyncReaction(Channel.READ, Channel.EMPTY, Channel.LINE) {
+				@Override
+				public Object react(Join join, Object[] args) {
+					final ReadRequest request = (ReadRequest) args[0];
+					final InputBuffer buffer = (InputBuffer) args[1];
+					final String line = (String) args[2];
+					if (line.length() != 0) {
+						buffer.start(line);
+						return request.perform(join, buffer);
+					} else {
+						join.send(Channel.EMPTY, buffer);
+						return -1;
+					}
+				}
+			});
+			addReaction(new Join.SyncReaction(Channel.READ, Channel.FINISHED) {
+				@Override
+				public Object react(Join join, Object[] args) {
+					join.send(Channel.FINISHED, null);
+					return -1;
+				}
+			});
+
+			addReaction(new Join.SyncReaction(Channel.GET_LINE, Channel.LINE) {
+				@Override
+				public Object react(Join join, Object[] args) {
+					return args[1];
+				}
+			});
+			addReaction(new Join.SyncReaction(Channel.GET_LINE, Channel.FINISHED) {
+				@Override
+				public Object react(Join join, Object[] args) {
+					join.send(Channel.FINISHED, null);
+					return TextAreaReadline.EMPTY_LINE;
+				}
+			});
+		}
+	};
+
+	private final Join inputJoin = INPUT_SPEC.createJoin();
+
+	JoinConsoleInput() {
+		inputJoin.send(Channel.EMPTY, new InputBuffer());
+	}
+
+	@Override
+	public int available() {
+		return (Integer) inputJoin.call(Channel.AVAILABLE, null);
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) {
+		final ReadRequest request = new ReadRequest(b, off, len);
+		return (Integer) inputJoin.call(Channel.READ, request);
+	}
+
+	@Override
+	public int read(ByteBuffer dst) {
+		final ReadRequest request = new ReadRequest(dst);
+		return (Integer) inputJoin.call(Channel.READ, request);
+	}
+
+	@Override
+	public String readLine() {
+		return (String) inputJoin.call(Channel.GET_LINE, null);
+	}
+
+	@Override
+	public void sendLine(String line) {
+		inputJoin.send(Channel.LINE, line);
+	}
+
+	@Override
+	public void shutdown() {
+		inputJoin.send(Channel.SHUTDOWN, null);
+	}
+}
@@ -0,0 +1,152 @@
+package com.creemama.swingconsole;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A {@link ConsoleInput} built on a lock-free single-producer, single-consumer
+ * queue of lines.
+ * <p>
+ * Only one thread, the event dispatch thread, may call
+ * {@link #sendLine(String)}, and only one thread, the interpreter thread, may
+ * read. The reader parks while the queue is empty, and the sender unparks it.
+ * Any thread may call {@link #shutdown()}.
+ * </p>
+ */
+class LockFreeConsoleInput implements ConsoleInput {
+	/**
+	 * The number of times the reader polls the queue before parking, which
+	 * spares the cost of parking when the next line follows closely; like
+	 * {@link java.util.concurrent.SynchronousQueue}, never spin on a single
+	 * processor
+	 */
+	private static final int SPINS = Runtime.getRuntime().availableProcessors() > 1 ? 1 << 10 : 0;
+
+	private static final class Node {
+		String line;
+
+		volatile Node next;
+
+		Node(String line) {
+			this.line = line;
+		}
+	}
+
+	/**
+	 * The bytes of the line being read; read and written only by the consumer
+	 */
+	private final InputBuffer buffer = new InputBuffer();
+
+	private volatile boolean finished = false;
+
+	/**
+	 * The last node consumed, whose {@code next} is the next line to read
+	 */
+	private Node head = new Node(null);
+
+	/**
+	 * The last node sent; read and written only by the producer
+	 */
+	private Node tail = head;
+
+	private volatile Thread waiter;
+
+	@Override
+	public int available() {
+		if (finished)
+			return 0;
+		return buffer.available();
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) {
+		return awaitLine() ? buffer.read(b, off, len) : -1;
+	}
+
+	@Override
+	public int read(ByteBuffer dst) {
+		return awaitLine() ? buffer.read(dst) : -1;
+	}
+
+	/**
+	 * Waits for a line to read if the current one is read completely.
+	 *
+	 * @return {@code false} at the end of input
+	 */
+	private boolean awaitLine() {
+		if (finished)
+			return false;
+		if (!buffer.hasRemaining()) {
+			String line = take();
+			if (line == null || line.isEmpty())
+				return false;
+			buffer.start(line);
+		}
+		return true;
+	}
+
+	@Override
+	public String readLine() {
+		if (finished)
+			return TextAreaReadline.EMPTY_LINE;
+		String line = take();
+		return line == null ? TextAreaReadline.EMPTY_LINE : line;
+	}
+
+	@Override
+	public void sendLine(String line) {
+		if (finished)
+			return;
+		final Node node = new Node(line);
+		// The volatile write publishes the line to the consumer.
+		tail.next = node;
+		tail = node;
+		final Thread thread = waiter;
+		if (thread != null)
+			LockSupport.unpark(thread);
+	}
+
+	@Override
+	public void shutdown() {
+		finished = true;
+		final Thread thread = waiter;
+		if (thread != null)
+			LockSupport.unpark(thread);
+	}
+
+	/**
+	 * Takes the next line, parking until one arrives.
+	 *
+	 * @return the next line or {@code null} if shut down
+	 */
+	private String take() {
+		Node next = head.next;
+		for (int i = 0; next == null && i < SPINS; i++) {
+			next = head.next;
+		}
+		if (next == null) {
+			boolean interrupted = false;
+			waiter = Thread.currentThread();
+			try {
+				while ((next = head.next) == null) {
+					if (finished)
+						return null;
+					LockSupport.park(this);
+					// Like Join, keep waiting when interrupted, but restore the interrupt.
+					if (Thread.interrupted())
+						interrupted = true;
+				}
+			} finally {
+				waiter = null;
+				if (interrupted)
+					Thread.currentThread().interrupt();
+			}
+		}
+		if (finished)
+			return null;
+		head = next;
+		final String line = next.line;
+		next.line = null;
+		return line;
+	}
+}
@@ -0,0 +1,120 @@
+package com.creemama.swingconsole;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * A bounded map that evicts its least recently used entry and counts how often
+ * lookups find what they look for.
+ * <p>
+ * This class is thread-safe. The eviction callback runs while the cache is
+ * locked, on the thread that added the entry causing the eviction.
+ * </p>
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+public class LruCache<K, V> {
+	final private int capacity;
+
+	final private Map<K, V> entries;
+
+	private long hits;
+
+	private long misses;
+
+	public LruCache(int capacity) {
+		this(capacity, (key, value) -> {
+		});
+	}
+
+	/**
+	 * Constructs a new {@link LruCache} instance.
+	 *
+	 * @param capacity   the most entries to keep
+	 * @param onEviction called with every entry evicted to make room
+	 * @throws IllegalArgumentException if the capacity is not positive
+	 */
+	public LruCache(int capacity, BiConsumer<? super K, ? super V> onEviction) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("capacity must be positive: " + capacity);
+		this.capacity = capacity;
+		this.entries = new LinkedHashMap<K, V>(16, 0.75f, true) {
+			final private static long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+				if (size() <= LruCache.this.capacity)
+					return false;
+				onEviction.accept(eldest.getKey(), eldest.getValue());
+				return true;
+			}
+		};
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+	}
+
+	/**
+	 * Returns the value of a key, computing and adding it if absent. A
+	 * {@code null} value is not added.
+	 *
+	 * @param key     the key
+	 * @param compute computes the value of an absent key
+	 * @return the value of the key
+	 */
+	public synchronized V computeIfAbsent(K key, Function<? super K, ? extends V> compute) {
+		V value = get(key);
+		if (value == null) {
+			value = compute.apply(key);
+			if (value != null)
+				entries.put(key, value);
+		}
+		return value;
+	}
+
+	/**
+	 * Returns the value of a key, counting a hit if there is one and a miss
+	 * otherwise.
+	 *
+	 * @param key the key
+	 * @return the value or {@code null} if absent
+	 */
+	public synchronized V get(K key) {
+		V value = entries.get(key);
+		if (value == null)
+			misses++;
+		else
+			hits++;
+		return value;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized void put(K key, V value) {
+		entries.put(key, value);
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "LruCache[size=" + entries.size() + ", capacity=" + capacity + ", hits=" + hits + ", misses=" + misses
+				+ "]";
+	}
+}
@@ -0,0 +1,730 @@
+package com.creemama.swingconsole;
+
+import static com.headius.backport9.buffer.Buffers.clearBuffer;
+import static com.headius.backport9.buffer.Buffers.positionBuffer;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import jline.console.history.MemoryHistory;
+import jline.console.history.PersistentHistory;
+
+/**
+ * A command history persisted to an append-only log and read from it one
+ * entry at a time.
+ * <p>
+ * Unlike {@link jline.console.history.FileHistory}, which reads every entry
+ * into memory when constructed and rewrites the whole file when flushed, this
+ * history writes each entry to the end of its file as it is added, so a crash
+ * loses nothing, and keeps only the offset of every entry in memory, decoding
+ * an entry when asked for it. The file is indexed on first use instead of on
+ * construction. Entries are read through the file's channel rather than a
+ * memory map, which Java cannot release on demand and which would keep Windows
+ * from replacing the file. Entries trimmed beyond the maximum size stay in
+ * the file until enough accumulate for a background thread to compact it.
+ * </p>
+ * <p>
+ * The file holds one entry per UTF-8 line, the format of
+ * {@code FileHistory}, so either can read the other's files. An entry spanning
+ * several lines is therefore added as several entries. Changes other than
+ * adding entries, such as {@link #set(int, CharSequence)} or
+ * {@link #removeLast()}, rewrite the file and are meant for occasional use.
+ * </p>
+ * <p>
+ * As {@link jline.console.history.History} methods cannot throw
+ * {@link IOException}, they throw {@link UncheckedIOException} if reading or
+ * writing the file fails. It implements {@link RandomAccess} as
+ * {@link #get(int)} takes constant time. This class is thread-safe.
+ * </p>
+ */
+public class MappedHistory implements PersistentHistory, Closeable, RandomAccess {
+	private static class EntryImpl implements Entry {
+		final private int index;
+
+		final private CharSequence value;
+
+		EntryImpl(int index, CharSequence value) {
+			this.index = index;
+			this.value = value;
+		}
+
+		@Override
+		public int index() {
+			return index;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d: %s", index, value);
+		}
+
+		@Override
+		public CharSequence value() {
+			return value;
+		}
+	}
+
+	private class EntriesIterator implements ListIterator<Entry> {
+		/**
+		 * The index, relative to the first entry, of the entry {@link #next()}
+		 * returns
+		 */
+		private int cursor;
+
+		EntriesIterator(int cursor) {
+			if (cursor < 0 || cursor > size())
+				throw new IndexOutOfBoundsException("Index: " + cursor + ", Size: " + size());
+			this.cursor = cursor;
+		}
+
+		@Override
+		public void add(Entry e) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public boolean hasNext() {
+			return cursor < size();
+		}
+
+		@Override
+		public boolean hasPrevious() {
+			return cursor > 0;
+		}
+
+		@Override
+		public Entry next() {
+			synchronized (MappedHistory.this) {
+				if (!hasNext())
+					throw new NoSuchElementException();
+				final int i = cursor++;
+				return new EntryImpl(offset + i, decode(first + i));
+			}
+		}
+
+		@Override
+		public int nextIndex() {
+			return offset + cursor;
+		}
+
+		@Override
+		public Entry previous() {
+			synchronized (MappedHistory.this) {
+				if (!hasPrevious())
+					throw new NoSuchElementException();
+				final int i = --cursor;
+				return new EntryImpl(offset + i, decode(first + i));
+			}
+		}
+
+		@Override
+		public int previousIndex() {
+			return offset + cursor - 1;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void set(Entry e) {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	public static final int DEFAULT_MAX_SIZE = MemoryHistory.DEFAULT_MAX_SIZE;
+
+	/**
+	 * The thread compacting logs, started when needed
+	 */
+	private static final ExecutorService COMPACTOR = new ThreadPoolExecutor(0, 1, 60L, TimeUnit.SECONDS,
+			new LinkedBlockingQueue<>(), r -> {
+				Thread thread = new Thread(r, "MappedHistory-compaction");
+				thread.setDaemon(true);
+				return thread;
+			});
+
+	/**
+	 * The number of bytes of the log to read at a time when indexing it
+	 */
+	private static final int INDEX_BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * The fewest trimmed entries worth compacting the log for
+	 */
+	private static final int MIN_COMPACTION = 1024;
+
+	private boolean autoTrim = false;
+
+	private FileChannel channel;
+
+	private boolean compacting;
+
+	/**
+	 * The number of entries in the log, trimmed ones included
+	 */
+	private int count;
+
+	/**
+	 * The length of the log in bytes
+	 */
+	private long end;
+
+	final private Path file;
+
+	/**
+	 * The index in the log of the first entry not trimmed
+	 */
+	private int first;
+
+	/**
+	 * The number of times the log was replaced; a compaction that started before
+	 * a replacement is abandoned
+	 */
+	private int generation;
+
+	private boolean ignoreDuplicates = true;
+
+	/**
+	 * The index, relative to the first entry, of the current entry
+	 */
+	private int index;
+
+	private boolean loaded;
+
+	private int maxSize = DEFAULT_MAX_SIZE;
+
+	/**
+	 * The number of entries trimmed, which {@link #index()} and the indices of
+	 * entries count from
+	 */
+	private int offset;
+
+	/**
+	 * The offset in the log of every entry
+	 */
+	private long[] starts = new long[16];
+
+	/**
+	 * Constructs a new {@link MappedHistory} instance, creating the file and its
+	 * parent directories if they do not exist. The file is read on first use.
+	 *
+	 * @param file the file to persist the history to
+	 * @throws IOException if the file cannot be created or opened
+	 */
+	public MappedHistory(File file) throws IOException {
+		this.file = file.getAbsoluteFile().toPath();
+		final Path parent = this.file.getParent();
+		if (parent != null)
+			Files.createDirectories(parent);
+		channel = open();
+	}
+
+	@Override
+	public synchronized void add(CharSequence item) {
+		Objects.requireNonNull(item);
+		ensureLoaded();
+		try {
+			for (String line : item.toString().split("\r\n|\r|\n")) {
+				if (autoTrim)
+					line = line.trim();
+				if (ignoreDuplicates && size() > 0 && line.equals(decode(count - 1)))
+					continue;
+				append(line);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		maybeResize();
+	}
+
+	private void addStart(long start) {
+		if (count == starts.length)
+			starts = Arrays.copyOf(starts, count * 2);
+		starts[count++] = start;
+	}
+
+	private void append(String line) throws IOException {
+		final byte[] bytes = (line + '\n').getBytes(StandardCharsets.UTF_8);
+		write(ByteBuffer.wrap(bytes), end);
+		addStart(end);
+		end += bytes.length;
+	}
+
+	@Override
+	public synchronized void clear() {
+		rewrite(new ArrayList<>());
+		offset = 0;
+		index = 0;
+	}
+
+	/**
+	 * Closes the file. Entries already added remain in it.
+	 *
+	 * @throws IOException if closing the file fails
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * Copies the log, from the entries not trimmed on, to a new file and replaces
+	 * the log with it. Only entries added while copying are copied holding the
+	 * lock, as the bytes of older entries never change, and the offsets of the
+	 * entries are shifted instead of indexing the new file again.
+	 */
+	private void compact() {
+		Path temp = null;
+		try {
+			final FileChannel source;
+			final long from;
+			final long to;
+			final int trimmed;
+			final int startGeneration;
+			synchronized (this) {
+				source = channel;
+				// Every entry may have been trimmed, leaving nothing to copy.
+				from = first < count ? starts[first] : end;
+				to = end;
+				trimmed = first;
+				startGeneration = generation;
+			}
+			temp = createTempFile();
+			try (FileChannel target = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+				transfer(source, from, to, target);
+			}
+			synchronized (this) {
+				if (generation != startGeneration)
+					return;
+				try (FileChannel target = FileChannel.open(temp, StandardOpenOption.WRITE,
+						StandardOpenOption.APPEND)) {
+					transfer(channel, to, end, target);
+				}
+				moveLog(temp);
+				count -= trimmed;
+				first -= trimmed;
+				for (int i = 0; i < count; i++)
+					starts[i] = starts[i + trimmed] - from;
+				end -= from;
+			}
+		} catch (IOException e) {
+			// Leave the log as it is and compact it later.
+		} finally {
+			synchronized (this) {
+				compacting = false;
+			}
+			if (temp != null)
+				try {
+					Files.deleteIfExists(temp);
+				} catch (IOException e) {
+					// Ignore.
+				}
+		}
+	}
+
+	private Path createTempFile() throws IOException {
+		return Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+	}
+
+	@Override
+	public synchronized CharSequence current() {
+		ensureLoaded();
+		if (index >= size())
+			return "";
+		return decode(first + index);
+	}
+
+	/**
+	 * Returns an entry of the log.
+	 *
+	 * @param i the index of the entry in the log
+	 * @return the entry without its line break
+	 */
+	private String decode(int i) {
+		final long start = starts[i];
+		final long stop = (i + 1 < count ? starts[i + 1] : end) - 1;
+		final ByteBuffer bytes;
+		try {
+			bytes = read(start, (int) (stop - start));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		int length = bytes.remaining();
+		// Strip the carriage return of a line that FileHistory wrote on Windows.
+		if (length > 0 && bytes.get(bytes.position() + length - 1) == '\r')
+			length--;
+		return new String(bytes.array(), bytes.arrayOffset() + bytes.position(), length, StandardCharsets.UTF_8);
+	}
+
+	private void ensureLoaded() {
+		if (loaded)
+			return;
+		try {
+			indexLog();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		loaded = true;
+		first = offset = Math.max(0, count - maxSize);
+		index = size();
+		maybeCompact();
+	}
+
+	@Override
+	public synchronized ListIterator<Entry> entries() {
+		ensureLoaded();
+		return entries(offset);
+	}
+
+	@Override
+	public synchronized ListIterator<Entry> entries(int index) {
+		ensureLoaded();
+		return new EntriesIterator(index - offset);
+	}
+
+	/**
+	 * Forces the entries added so far to the storage device.
+	 *
+	 * @throws IOException if forcing the file fails
+	 */
+	@Override
+	public synchronized void flush() throws IOException {
+		channel.force(false);
+	}
+
+	@Override
+	public synchronized CharSequence get(int index) {
+		ensureLoaded();
+		final int i = index - offset;
+		if (i < 0 || i >= size())
+			throw new IndexOutOfBoundsException("Index: " + index);
+		return decode(first + i);
+	}
+
+	/**
+	 * Returns the file this history persists to.
+	 *
+	 * @return the history file
+	 */
+	public File getFile() {
+		return file.toFile();
+	}
+
+	public synchronized int getMaxSize() {
+		return maxSize;
+	}
+
+	@Override
+	public synchronized int index() {
+		ensureLoaded();
+		return offset + index;
+	}
+
+	public synchronized boolean isAutoTrim() {
+		return autoTrim;
+	}
+
+	@Override
+	public synchronized boolean isEmpty() {
+		return size() == 0;
+	}
+
+	public synchronized boolean isIgnoreDuplicates() {
+		return ignoreDuplicates;
+	}
+
+	@Override
+	public Iterator<Entry> iterator() {
+		return entries();
+	}
+
+	/**
+	 * Indexes the offset of every entry in the log.
+	 */
+	private void indexLog() throws IOException {
+		end = channel.size();
+		count = 0;
+		final ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(INDEX_BUFFER_SIZE, end));
+		long lineStart = 0;
+		for (long position = 0; position < end;) {
+			clearBuffer(buffer);
+			final int n = channel.read(buffer, position);
+			if (n < 0)
+				throw new IOException("The history file was truncated: " + file);
+			for (int i = 0; i < n; i++) {
+				if (buffer.get(i) == '\n') {
+					addStart(lineStart);
+					lineStart = position + i + 1;
+				}
+			}
+			position += n;
+		}
+		if (lineStart < end) {
+			// End a last line that a crash or an editor left without a line break so
+			// that the next entry starts a line of its own.
+			addStart(lineStart);
+			write(ByteBuffer.wrap(new byte[] { '\n' }), end);
+			end++;
+		}
+	}
+
+	private void maybeCompact() {
+		if (compacting || first < Math.max(maxSize, MIN_COMPACTION))
+			return;
+		compacting = true;
+		COMPACTOR.execute(this::compact);
+	}
+
+	private void maybeResize() {
+		while (size() > maxSize) {
+			first++;
+			offset++;
+		}
+		index = size();
+		maybeCompact();
+	}
+
+	@Override
+	public synchronized boolean moveTo(int index) {
+		ensureLoaded();
+		index -= offset;
+		if (index >= 0 && index < size()) {
+			this.index = index;
+			return true;
+		}
+		return false;
+	}
+
+	@Override
+	public synchronized void moveToEnd() {
+		ensureLoaded();
+		index = size();
+	}
+
+	@Override
+	public synchronized boolean moveToFirst() {
+		ensureLoaded();
+		if (size() > 0 && index != 0) {
+			index = 0;
+			return true;
+		}
+		return false;
+	}
+
+	@Override
+	public synchronized boolean moveToLast() {
+		ensureLoaded();
+		final int lastEntry = size() - 1;
+		if (lastEntry >= 0 && lastEntry != index) {
+			index = lastEntry;
+			return true;
+		}
+		return false;
+	}
+
+	@Override
+	public synchronized boolean next() {
+		ensureLoaded();
+		if (index >= size())
+			return false;
+		index++;
+		return true;
+	}
+
+	private FileChannel open() throws IOException {
+		return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+	}
+
+	@Override
+	public synchronized boolean previous() {
+		ensureLoaded();
+		if (index <= 0)
+			return false;
+		index--;
+		return true;
+	}
+
+	/**
+	 * Removes every entry, leaving the file empty.
+	 */
+	@Override
+	public void purge() {
+		clear();
+	}
+
+	private ByteBuffer read(long position, int length) throws IOException {
+		final ByteBuffer bytes = ByteBuffer.allocate(length);
+		while (bytes.hasRemaining())
+			if (channel.read(bytes, position + bytes.position()) < 0)
+				throw new IOException("The history file was truncated: " + file);
+		positionBuffer(bytes, 0);
+		return bytes;
+	}
+
+	@Override
+	public synchronized CharSequence remove(int i) {
+		// As MemoryHistory does, take i relative to the first entry.
+		final List<String> entries = snapshot();
+		final String removed = entries.remove(i);
+		rewrite(entries);
+		return removed;
+	}
+
+	@Override
+	public synchronized CharSequence removeFirst() {
+		if (isEmpty())
+			throw new NoSuchElementException();
+		return remove(0);
+	}
+
+	@Override
+	public synchronized CharSequence removeLast() {
+		if (isEmpty())
+			throw new NoSuchElementException();
+		return remove(size() - 1);
+	}
+
+	/**
+	 * Moves another file over the log and opens it.
+	 */
+	private void moveLog(Path newLog) throws IOException {
+		generation++;
+		channel.close();
+		try {
+			Files.move(newLog, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			channel = open();
+		}
+	}
+
+	/**
+	 * Replaces the log with another file and indexes it.
+	 */
+	private void replace(Path newLog) throws IOException {
+		try {
+			moveLog(newLog);
+		} finally {
+			indexLog();
+		}
+	}
+
+	@Override
+	public synchronized void replace(CharSequence item) {
+		removeLast();
+		add(item);
+	}
+
+	/**
+	 * Replaces the log with the given entries.
+	 */
+	private void rewrite(List<String> entries) {
+		ensureLoaded();
+		Path temp = null;
+		try {
+			temp = createTempFile();
+			try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+				for (String entry : entries) {
+					writer.write(entry);
+					writer.write('\n');
+				}
+			}
+			replace(temp);
+			first = 0;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			if (temp != null)
+				try {
+					Files.deleteIfExists(temp);
+				} catch (IOException e) {
+					// Ignore.
+				}
+		}
+	}
+
+	@Override
+	public synchronized void set(int index, CharSequence item) {
+		final List<String> entries = snapshot();
+		entries.set(index - offset, item.toString());
+		rewrite(entries);
+	}
+
+	public synchronized void setAutoTrim(boolean flag) {
+		autoTrim = flag;
+	}
+
+	public synchronized void setIgnoreDuplicates(boolean flag) {
+		ignoreDuplicates = flag;
+	}
+
+	/**
+	 * Sets the maximum number of entries, trimming the oldest ones beyond it.
+	 * Trimmed entries are dropped from the file when it is next compacted.
+	 *
+	 * @param maxSize the maximum number of entries
+	 */
+	public synchronized void setMaxSize(int maxSize) {
+		this.maxSize = maxSize;
+		if (loaded)
+			maybeResize();
+	}
+
+	@Override
+	public synchronized int size() {
+		ensureLoaded();
+		return count - first;
+	}
+
+	private List<String> snapshot() {
+		final List<String> entries = new ArrayList<>(size());
+		for (int i = first; i < count; i++)
+			entries.add(decode(i));
+		return entries;
+	}
+
+	@Override
+	public synchronized String toString() {
+		final StringBuilder sb = new StringBuilder();
+		for (Entry e : this)
+			sb.append(e.toString()).append('\n');
+		return sb.toString();
+	}
+
+	private static void transfer(FileChannel source, long from, long to, FileChannel target) throws IOException {
+		while (from < to) {
+			final long n = source.transferTo(from, to - from, target);
+			if (n == 0)
+				throw new IOException("The history file was truncated");
+			from += n;
+		}
+	}
+
+	private void write(ByteBuffer bytes, long position) throws IOException {
+		while (bytes.hasRemaining())
+			position += channel.write(bytes, position);
+	}
+}
@@ -0,0 +1,231 @@
+package com.creemama.swingconsole;
+
+import java.awt.EventQueue;
+import java.io.InterruptedIOException;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+import javax.swing.Timer;
+import javax.swing.text.AttributeSet;
+
+/**
+ * A bounded buffer of console output sitting between the threads that write
+ * output and the event dispatch thread (EDT) that inserts it into a document.
+ * <p>
+ * Writers append text to the buffer, and a single scheduled task on the EDT
+ * drains everything accumulated since the last flush. Consecutive text sharing
+ * the same style coalesces into one run, so each flush costs one insert per
+ * style run instead of one EDT task and one insert per write. Writers block
+ * while the buffer is full until the EDT catches up, so the buffer never holds
+ * more than its capacity or a single larger write.
+ * </p>
+ */
+class OutputBuffer {
+	private static class Run {
+		AttributeSet style;
+
+		final StringBuilder text = new StringBuilder();
+	}
+
+	static final int DEFAULT_CAPACITY = 64 * 1024;
+
+	static final int DEFAULT_FLUSH_INTERVAL = 16;
+
+	private volatile int capacity = DEFAULT_CAPACITY;
+
+	private List<Run> draining = new ArrayList<>();
+
+	private boolean flushScheduled;
+
+	private volatile int flushInterval = DEFAULT_FLUSH_INTERVAL;
+
+	private final Object lock = new Object();
+
+	private List<Run> pending = new ArrayList<>();
+
+	private int pendingChars;
+
+	private int pendingRuns;
+
+	private final BiConsumer<String, AttributeSet> sink;
+
+	private final Timer timer;
+
+	/**
+	 * Constructs a new {@link OutputBuffer} instance.
+	 *
+	 * @param sink the consumer, called on the EDT, that inserts a run of text with
+	 *             the given style
+	 */
+	OutputBuffer(BiConsumer<String, AttributeSet> sink) {
+		this.sink = sink;
+		this.timer = new Timer(flushInterval, e -> flush());
+		// A coalescing timer drops a firing while its previous flush still runs,
+		// which would leave flushScheduled set with no flush coming.
+		this.timer.setCoalesce(false);
+		this.timer.setRepeats(false);
+	}
+
+	void append(char[] chars, int offset, int length, AttributeSet style) throws InterruptedIOException {
+		if (length == 0)
+			return;
+		synchronized (lock) {
+			awaitSpace(length);
+			appendRun(style).append(chars, offset, length);
+			pendingChars += length;
+			scheduleFlush();
+		}
+		flushIfDispatchThread();
+	}
+
+	void append(CharSequence text, AttributeSet style) throws InterruptedIOException {
+		final int length = text.length();
+		if (length == 0)
+			return;
+		synchronized (lock) {
+			awaitSpace(length);
+			appendRun(style).append(text);
+			pendingChars += length;
+			scheduleFlush();
+		}
+		flushIfDispatchThread();
+	}
+
+	private StringBuilder appendRun(AttributeSet style) {
+		if (pendingRuns > 0) {
+			Run last = pending.get(pendingRuns - 1);
+			if (last.style == style)
+				return last.text;
+		}
+		Run run;
+		if (pendingRuns < pending.size()) {
+			run = pending.get(pendingRuns);
+		} else {
+			run = new Run();
+			pending.add(run);
+		}
+		pendingRuns++;
+		run.style = style;
+		return run.text;
+	}
+
+	private void awaitSpace(int length) throws InterruptedIOException {
+		if (EventQueue.isDispatchThread())
+			// The EDT drains the buffer itself right after appending.
+			return;
+		while (pendingChars > 0 && pendingChars + length > capacity) {
+			scheduleFlush();
+			try {
+				lock.wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for console output to drain");
+			}
+		}
+	}
+
+	/**
+	 * Inserts all buffered output into the document.
+	 * <p>
+	 * Call this method only from the EDT.
+	 * </p>
+	 */
+	void flush() {
+		final int runs;
+		final List<Run> toDrain;
+		synchronized (lock) {
+			flushScheduled = false;
+			if (pendingRuns == 0)
+				return;
+			toDrain = pending;
+			runs = pendingRuns;
+			pending = draining;
+			draining = toDrain;
+			pendingRuns = 0;
+			pendingChars = 0;
+			lock.notifyAll();
+		}
+		for (int i = 0; i < runs; i++) {
+			Run run = toDrain.get(i);
+			String text = run.text.toString();
+			AttributeSet style = run.style;
+			run.style = null;
+			if (run.text.capacity() > capacity)
+				// Do not hold on to the memory of an unusually large write.
+				toDrain.set(i, new Run());
+			else
+				run.text.setLength(0);
+			sink.accept(text, style);
+		}
+	}
+
+	/**
+	 * Inserts all buffered output into the document, waiting for the EDT to do
+	 * so unless called from it.
+	 *
+	 * @throws InterruptedIOException if interrupted while waiting
+	 */
+	void flushAndWait() throws InterruptedIOException {
+		if (EventQueue.isDispatchThread()) {
+			flush();
+			return;
+		}
+		try {
+			// Waiting for this flush also waits for any flush the EDT is in the middle
+			// of.
+			EventQueue.invokeAndWait(this::flush);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for console output to drain");
+		} catch (InvocationTargetException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			if (e.getCause() instanceof Error)
+				throw (Error) e.getCause();
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	private void flushIfDispatchThread() {
+		if (EventQueue.isDispatchThread())
+			flush();
+	}
+
+	int getCapacity() {
+		return capacity;
+	}
+
+	int getFlushInterval() {
+		return flushInterval;
+	}
+
+	private void scheduleFlush() {
+		if (flushScheduled)
+			return;
+		flushScheduled = true;
+		int delay = flushInterval;
+		if (delay == 0) {
+			EventQueue.invokeLater(this::flush);
+		} else {
+			timer.setInitialDelay(delay);
+			timer.start();
+		}
+	}
+
+	void setCapacity(int capacity) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("capacity must be positive: " + capacity);
+		this.capacity = capacity;
+		synchronized (lock) {
+			lock.notifyAll();
+		}
+	}
+
+	void setFlushInterval(int flushInterval) {
+		if (flushInterval < 0)
+			throw new IllegalArgumentException("flushInterval must not be negative: " + flushInterval);
+		this.flushInterval = flushInterval;
+	}
+}
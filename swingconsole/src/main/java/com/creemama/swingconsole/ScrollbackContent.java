@@ -0,0 +1,324 @@
+package com.creemama.swingconsole;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.text.AbstractDocument;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Position;
+import javax.swing.text.Segment;
+import javax.swing.undo.UndoableEdit;
+
+/**
+ * The text of a {@link ScrollbackDocument}, kept in a circular buffer so that
+ * evicting the oldest lines costs the same however much scrollback stays.
+ * <p>
+ * Removing text from the start of the content only advances the start of the
+ * buffer. Positions are kept as offsets from the first character ever
+ * inserted, so the positions of the text that stays do not change either; only
+ * the positions inside the evicted text are visited, to pin them to the start. Other edits move whichever side of the edit is shorter, which for a
+ * console, whose edits happen at the end, is the few characters after them.
+ * </p>
+ * <p>
+ * As for {@link javax.swing.text.GapContent}, a position at an insertion
+ * offset other than 0 moves past the inserted text, and the document's locks
+ * guard the content. Edits cannot be undone.
+ * </p>
+ */
+class ScrollbackContent implements AbstractDocument.Content {
+	/**
+	 * A position in the content, as an offset from the first character ever
+	 * inserted
+	 */
+	private static final class Mark {
+		long index;
+
+		boolean dead;
+
+		/**
+		 * Whether the mark was evicted, which leaves it at the start for good
+		 */
+		boolean evicted;
+
+		/**
+		 * Kept so that the reference is enqueued once the position is garbage
+		 */
+		MarkReference reference;
+
+		Mark(long index) {
+			this.index = index;
+		}
+	}
+
+	private final class MarkPosition implements Position {
+		final Mark mark;
+
+		MarkPosition(Mark mark) {
+			this.mark = mark;
+		}
+
+		@Override
+		public int getOffset() {
+			return mark.evicted ? 0 : (int) (mark.index - removed);
+		}
+
+		@Override
+		public String toString() {
+			return Integer.toString(getOffset());
+		}
+	}
+
+	/**
+	 * Marks a mark dead once its position is garbage
+	 */
+	private static final class MarkReference extends WeakReference<MarkPosition> {
+		final Mark mark;
+
+		MarkReference(MarkPosition position, ReferenceQueue<MarkPosition> queue) {
+			super(position, queue);
+			this.mark = position.mark;
+		}
+	}
+
+	/**
+	 * The position of offset 0, which no edit moves
+	 */
+	private static final Position START = new Position() {
+		@Override
+		public int getOffset() {
+			return 0;
+		}
+
+		@Override
+		public String toString() {
+			return "0";
+		}
+	};
+
+	private char[] buffer;
+
+	/**
+	 * The number of characters in the content, including the final newline
+	 */
+	private int count;
+
+	private int deadMarks;
+
+	/**
+	 * The index in {@link #buffer} of the first character
+	 */
+	private int head;
+
+	/**
+	 * The index in {@link #marks} of the first mark not evicted
+	 */
+	private int markHead;
+
+	/**
+	 * The marks in the order of their indexes, after the evicted ones
+	 */
+	private List<Mark> marks = new ArrayList<>();
+
+	private final ReferenceQueue<MarkPosition> queue = new ReferenceQueue<>();
+
+	/**
+	 * The number of characters ever removed from the start of the content
+	 */
+	private long removed;
+
+	ScrollbackContent() {
+		// Like every content, this one starts with the newline ending the last line.
+		buffer = new char[1024];
+		buffer[0] = '\n';
+		count = 1;
+	}
+
+	private void checkRange(int where, int length) throws BadLocationException {
+		if (where < 0 || length < 0 || where + length > count)
+			throw new BadLocationException("Invalid range " + where + " + " + length, where);
+	}
+
+	@Override
+	public Position createPosition(int offset) throws BadLocationException {
+		if (offset < 0 || offset > count)
+			throw new BadLocationException("Invalid offset", offset);
+		if (offset == 0)
+			return START;
+		purgeDeadMarks();
+		Mark mark = new Mark(removed + offset);
+		// Positions are mostly created near the end, where adding one is cheap.
+		marks.add(firstMark(offset), mark);
+		MarkPosition position = new MarkPosition(mark);
+		mark.reference = new MarkReference(position, queue);
+		return position;
+	}
+
+	/**
+	 * Returns the index in {@link #marks} of the first mark at or after an
+	 * offset.
+	 */
+	private int firstMark(int offset) {
+		long index = removed + offset;
+		int low = markHead;
+		int high = marks.size();
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (marks.get(middle).index < index)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+
+	@Override
+	public void getChars(int where, int length, Segment txt) throws BadLocationException {
+		checkRange(where, length);
+		int start = physical(where);
+		if (start + length <= buffer.length) {
+			txt.array = buffer;
+			txt.offset = start;
+			txt.count = length;
+		} else if (txt.isPartialReturn()) {
+			txt.array = buffer;
+			txt.offset = start;
+			txt.count = buffer.length - start;
+		} else {
+			char[] chars = new char[length];
+			int first = buffer.length - start;
+			System.arraycopy(buffer, start, chars, 0, first);
+			System.arraycopy(buffer, 0, chars, first, length - first);
+			txt.array = chars;
+			txt.offset = 0;
+			txt.count = length;
+		}
+	}
+
+	@Override
+	public String getString(int where, int length) throws BadLocationException {
+		Segment segment = new Segment();
+		getChars(where, length, segment);
+		return new String(segment.array, segment.offset, segment.count);
+	}
+
+	@Override
+	public UndoableEdit insertString(int where, String str) throws BadLocationException {
+		if (where < 0 || where >= count)
+			throw new BadLocationException("Invalid insert", where);
+		final int length = str.length();
+		if (length == 0)
+			return null;
+		if (count + length > buffer.length)
+			resize(count + length);
+		if (where < count - where) {
+			// Move the characters before the insertion to the left.
+			head = (head - length) & (buffer.length - 1);
+			move(length, 0, where);
+		} else {
+			move(where, where + length, count - where);
+		}
+		for (int i = 0; i < length; i++)
+			buffer[physical(where + i)] = str.charAt(i);
+		count += length;
+
+		// A mark at 0 stays at the start, and any other mark at the insertion
+		// moves past it.
+		for (int i = firstMark(where == 0 ? 1 : where); i < marks.size(); i++)
+			marks.get(i).index += length;
+		return null;
+	}
+
+	@Override
+	public int length() {
+		return count;
+	}
+
+	/**
+	 * Moves characters within the content, each in the buffer slot of its offset.
+	 *
+	 * @param from   the offset of the first character to move
+	 * @param to     the offset to move it to
+	 * @param length the number of characters to move
+	 */
+	private void move(int from, int to, int length) {
+		if (to < from) {
+			for (int i = 0; i < length; i++)
+				buffer[physical(to + i)] = buffer[physical(from + i)];
+		} else {
+			for (int i = length - 1; i >= 0; i--)
+				buffer[physical(to + i)] = buffer[physical(from + i)];
+		}
+	}
+
+	private int physical(int offset) {
+		return (head + offset) & (buffer.length - 1);
+	}
+
+	/**
+	 * Forgets the evicted marks and the marks whose positions are garbage once
+	 * they make up half of the marks.
+	 */
+	private void purgeDeadMarks() {
+		MarkReference reference;
+		while ((reference = (MarkReference) queue.poll()) != null) {
+			reference.mark.dead = true;
+			deadMarks++;
+		}
+		if (markHead + deadMarks <= marks.size() / 2)
+			return;
+		List<Mark> live = new ArrayList<>(Math.max(marks.size() - markHead - deadMarks, 16));
+		for (Mark mark : marks.subList(markHead, marks.size()))
+			if (!mark.dead)
+				live.add(mark);
+		marks = live;
+		markHead = 0;
+		deadMarks = 0;
+	}
+
+	@Override
+	public UndoableEdit remove(int where, int nitems) throws BadLocationException {
+		if (where < 0 || nitems < 0 || where + nitems >= count)
+			throw new BadLocationException("Invalid remove", where + nitems);
+		if (nitems == 0)
+			return null;
+		if (where == 0) {
+			purgeDeadMarks();
+			// Evict from the start: the characters and marks that stay keep their
+			// slots and indexes.
+			head = physical(nitems);
+			count -= nitems;
+			removed += nitems;
+			for (; markHead < marks.size() && marks.get(markHead).index < removed; markHead++)
+				marks.get(markHead).evicted = true;
+			return null;
+		}
+		if (where < count - where - nitems) {
+			// Move the characters before the removal to the right.
+			move(0, nitems, where);
+			head = physical(nitems);
+		} else {
+			move(where + nitems, where, count - where - nitems);
+		}
+		count -= nitems;
+		long start = removed + where;
+		long end = start + nitems;
+		for (int i = firstMark(where); i < marks.size(); i++) {
+			Mark mark = marks.get(i);
+			mark.index = mark.index < end ? start : mark.index - nitems;
+		}
+		return null;
+	}
+
+	private void resize(int needed) {
+		int capacity = buffer.length;
+		while (capacity < needed)
+			capacity <<= 1;
+		char[] resized = new char[capacity];
+		for (int i = 0; i < count; i++)
+			resized[i] = buffer[physical(i)];
+		buffer = resized;
+		head = 0;
+	}
+}
@@ -0,0 +1,122 @@
+package com.creemama.swingconsole;
+
+import javax.swing.text.BadLocationException;
+import javax.swing.text.DefaultStyledDocument;
+import javax.swing.text.Element;
+import javax.swing.text.StyleContext;
+
+/**
+ * A styled document holding the scrollback of an interactive console, bounded
+ * by a maximum number of lines or characters.
+ * <p>
+ * Once the scrollback exceeds its limit, {@link #trim(int)} evicts whole lines
+ * from the top of the document. The text lives in a {@link ScrollbackContent},
+ * which evicts text by advancing the start of a circular buffer, so the text
+ * and positions of the scrollback that stays are left alone. What is left of
+ * an eviction is removing the elements of the evicted lines, and every
+ * eviction frees an extra tenth of the limit so that this happens once per
+ * tenth of the limit instead of on every insert.
+ * </p>
+ */
+public class ScrollbackDocument extends DefaultStyledDocument {
+	final private static long serialVersionUID = 1L;
+
+	/**
+	 * The default maximum number of characters, the same limit JRuby's
+	 * TextAreaReadline uses (see JRUBY-4237)
+	 */
+	public static final int DEFAULT_MAX_CHARS = 100000;
+
+	private volatile int maxChars = DEFAULT_MAX_CHARS;
+
+	private volatile int maxLines = 0;
+
+	public ScrollbackDocument() {
+		super(new ScrollbackContent(), new StyleContext());
+	}
+
+	/**
+	 * Returns the maximum number of characters of scrollback.
+	 *
+	 * @return the maximum number of characters or {@code 0} if unlimited
+	 */
+	public int getMaxChars() {
+		return maxChars;
+	}
+
+	/**
+	 * Returns the maximum number of lines of scrollback.
+	 *
+	 * @return the maximum number of lines or {@code 0} if unlimited
+	 */
+	public int getMaxLines() {
+		return maxLines;
+	}
+
+	/**
+	 * Sets the maximum number of characters of scrollback.
+	 *
+	 * @param maxChars the maximum number of characters or {@code 0} for no limit
+	 * @throws IllegalArgumentException if {@code maxChars} is negative
+	 */
+	public void setMaxChars(int maxChars) {
+		if (maxChars < 0)
+			throw new IllegalArgumentException("maxChars must not be negative: " + maxChars);
+		this.maxChars = maxChars;
+	}
+
+	/**
+	 * Sets the maximum number of lines of scrollback.
+	 *
+	 * @param maxLines the maximum number of lines or {@code 0} for no limit
+	 * @throws IllegalArgumentException if {@code maxLines} is negative
+	 */
+	public void setMaxLines(int maxLines) {
+		if (maxLines < 0)
+			throw new IllegalArgumentException("maxLines must not be negative: " + maxLines);
+		this.maxLines = maxLines;
+	}
+
+	/**
+	 * Evicts the oldest lines if the scrollback exceeds its limits.
+	 *
+	 * @param limit the offset before which to evict; text at or after this offset,
+	 *              like the line the user is editing, stays
+	 * @return the number of characters removed from the start of the document
+	 */
+	public int trim(int limit) {
+		final Element root = getDefaultRootElement();
+		int end = 0;
+
+		final int lines = maxLines;
+		if (lines > 0) {
+			int extra = root.getElementCount() - lines;
+			if (extra > 0) {
+				int evict = Math.min(extra + lines / 10, root.getElementCount() - 1);
+				if (evict > 0)
+					end = root.getElement(evict - 1).getEndOffset();
+			}
+		}
+
+		final int chars = maxChars;
+		if (chars > 0) {
+			int extra = getLength() - chars;
+			if (extra > 0) {
+				int evict = Math.min(extra + chars / 10, getLength());
+				// Round up to the end of the line containing the last evicted character.
+				Element line = root.getElement(root.getElementIndex(evict - 1));
+				end = Math.max(end, Math.min(line.getEndOffset(), getLength()));
+			}
+		}
+
+		end = Math.min(end, limit);
+		if (end <= 0)
+			return 0;
+		try {
+			remove(0, end);
+		} catch (BadLocationException e) {
+			return 0;
+		}
+		return end;
+	}
+}
@@ -1,10 +1,22 @@
 package com.creemama.swingconsole;
 
+import java.util.Optional;
+
 /**
  * A task that hooks up and runs an interactive console displayed within a
  * {@link SwingConsoleDialog} or {@link SwingConsoleFrame}.
  */
 public interface SwingConsole {
+	/**
+	 * Returns the metrics that the window displaying this console records the
+	 * creation of the window and the first prompt in.
+	 *
+	 * @return the metrics or nothing if this console is not timed
+	 */
+	default Optional<ConsoleMetrics> getMetrics() {
+		return Optional.empty();
+	}
+
 	/**
 	 * Runs the interactive console.
 	 * <p>
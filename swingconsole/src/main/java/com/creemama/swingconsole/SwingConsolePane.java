@@ -5,8 +5,11 @@ import java.awt.Font;
 import java.awt.Insets;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.channels.ReadableByteChannel;
 
 import javax.swing.JTextPane;
+import javax.swing.text.StyledEditorKit;
 
 import jline.console.completer.Completer;
 import jline.console.history.History;
@@ -18,16 +21,49 @@ import jline.console.history.History;
 public class SwingConsolePane extends JTextPane {
 	final private static long serialVersionUID = 1L;
 
+	/**
+	 * The metrics to record the first prompt in or {@code null}
+	 */
+	private volatile ConsoleMetrics metrics;
+
+	final private ScrollbackDocument scrollback;
+
 	final private TextAreaReadline tar;
 
 	public SwingConsolePane(String message) {
+		this(message, TextAreaReadline.InputMode.JOIN);
+	}
+
+	/**
+	 * Constructs a new {@link SwingConsolePane} instance.
+	 *
+	 * @param message   the message to display before the first prompt
+	 * @param inputMode the implementation of the channel handing input lines to
+	 *                  the interpreter
+	 */
+	public SwingConsolePane(String message, TextAreaReadline.InputMode inputMode) {
 		setBackground(new Color(0xf2, 0xf2, 0xf2));
 		setCaretColor(new Color(0xa4, 0x00, 0x00));
 		Font font = SwingConsoleUtil.findFont("Monospaced", Font.PLAIN, 14, new String[] { "Monaco", "Andale Mono" });
 		setFont(font);
 		setForeground(new Color(0xa4, 0x00, 0x00));
 		setMargin(new Insets(8, 8, 8, 8));
-		tar = new TextAreaReadline(this, message);
+		setStyledDocument(scrollback = new ScrollbackDocument());
+		tar = new TextAreaReadline(this, message, inputMode);
+	}
+
+	/**
+	 * @see TextAreaReadline#getCompletionTimeout()
+	 */
+	public int getCompletionTimeout() {
+		return tar.getCompletionTimeout();
+	}
+
+	/**
+	 * @see TextAreaReadline#getInputChannel()
+	 */
+	public ReadableByteChannel getInputChannel() {
+		return tar.getInputChannel();
 	}
 
 	public InputStream getInputStream() {
@@ -38,14 +74,129 @@ public class SwingConsolePane extends JTextPane {
 		return tar.getOutputStream();
 	}
 
+	/**
+	 * @see TextAreaReadline#getWriter()
+	 */
+	public Writer getWriter() {
+		return tar.getWriter();
+	}
+
+	/**
+	 * @see TextAreaReadline#getOutputBufferSize()
+	 */
+	public int getOutputBufferSize() {
+		return tar.getOutputBufferSize();
+	}
+
+	/**
+	 * @see TextAreaReadline#getOutputFlushInterval()
+	 */
+	public int getOutputFlushInterval() {
+		return tar.getOutputFlushInterval();
+	}
+
+	/**
+	 * @see ScrollbackDocument#getMaxChars()
+	 */
+	public int getScrollbackChars() {
+		return scrollback.getMaxChars();
+	}
+
+	/**
+	 * @see ScrollbackDocument#getMaxLines()
+	 */
+	public int getScrollbackLines() {
+		return scrollback.getMaxLines();
+	}
+
 	public void inject(Completer newCompleter, History newHistory) {
 		tar.inject(newCompleter, newHistory);
 	}
 
+	/**
+	 * Returns whether this pane paints only the visible lines of the scrollback.
+	 *
+	 * @return {@code true} if this pane is virtualized
+	 * @see #setVirtualized(boolean)
+	 */
+	public boolean isVirtualized() {
+		return getEditorKit() instanceof ConsoleEditorKit;
+	}
+
 	public String readLine(String prompt) {
+		final ConsoleMetrics metrics = this.metrics;
+		if (metrics != null) {
+			metrics.firstPrompt();
+			this.metrics = null;
+		}
 		return tar.readLine(prompt);
 	}
 
+	void setMetrics(ConsoleMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * @see TextAreaReadline#setCompletionTimeout(int)
+	 */
+	public void setCompletionTimeout(int millis) {
+		tar.setCompletionTimeout(millis);
+	}
+
+	/**
+	 * @see TextAreaReadline#setOutputBufferSize(int)
+	 */
+	public void setOutputBufferSize(int size) {
+		tar.setOutputBufferSize(size);
+	}
+
+	/**
+	 * @see TextAreaReadline#setOutputFlushInterval(int)
+	 */
+	public void setOutputFlushInterval(int millis) {
+		tar.setOutputFlushInterval(millis);
+	}
+
+	/**
+	 * @see ScrollbackDocument#setMaxChars(int)
+	 */
+	public void setScrollbackChars(int maxChars) {
+		scrollback.setMaxChars(maxChars);
+	}
+
+	/**
+	 * @see ScrollbackDocument#setMaxLines(int)
+	 */
+	public void setScrollbackLines(int maxLines) {
+		scrollback.setMaxLines(maxLines);
+	}
+
+	/**
+	 * Sets whether this pane paints only the visible lines of the scrollback.
+	 * <p>
+	 * By default, this pane builds views for every line of the scrollback and
+	 * wraps long lines, so painting and layout slow down as the scrollback grows.
+	 * A virtualized pane lays out every line at the height of its font and paints
+	 * only the lines in view, so it stays fast with scrollbacks of millions of
+	 * lines. Its lines do not wrap; wrap it in a scroll pane to scroll long lines
+	 * horizontally.
+	 * </p>
+	 * <p>
+	 * Call this method only from the event dispatch thread.
+	 * </p>
+	 *
+	 * @param virtualized whether to paint only the visible lines
+	 */
+	public void setVirtualized(boolean virtualized) {
+		if (virtualized == isVirtualized())
+			return;
+		final int caret = getCaretPosition();
+		// Setting the editor kit replaces the document, so put back the scrollback.
+		setEditorKit(virtualized ? new ConsoleEditorKit() : new StyledEditorKit());
+		setStyledDocument(scrollback);
+		setCaretPosition(caret);
+	}
+
 	public void shutDown() {
 		tar.shutdown();
 	}
@@ -5,6 +5,7 @@ import java.awt.Container;
 import java.awt.Dimension;
 import java.awt.Window;
 import java.lang.reflect.InvocationTargetException;
+import java.util.Optional;
 import java.util.function.Consumer;
 
 import javax.swing.JScrollPane;
@@ -60,6 +61,10 @@ class SwingConsoleWindow {
 					"You already called #run. Only call #run again after disposing of this window.");
 		running = true;
 
+		long start = System.nanoTime();
+		Optional<ConsoleMetrics> metrics = runnable.getMetrics();
+		metrics.ifPresent(m -> m.start(start));
+
 		SwingConsolePane text = new SwingConsolePane(" Welcome to the " + title + " \n\n");
 
 		JScrollPane pane = new JScrollPane();
@@ -68,6 +73,11 @@ class SwingConsoleWindow {
 		container.setLayout(new BorderLayout());
 		container.add(pane, BorderLayout.CENTER);
 
+		metrics.ifPresent(m -> {
+			m.record(ConsoleMetrics.Phase.CREATE_WINDOW, title, start);
+			text.setMetrics(m);
+		});
+
 		Thread swingConsoleThread = new Thread(() -> {
 			try {
 				if (visible)
@@ -10,14 +10,21 @@ import java.awt.event.KeyListener;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.Writer;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import javax.swing.DefaultListCellRenderer;
 import javax.swing.JComboBox;
+import javax.swing.Timer;
 import javax.swing.plaf.basic.BasicComboBoxUI;
 import javax.swing.plaf.basic.BasicComboPopup;
 import javax.swing.text.AbstractDocument;
@@ -43,7 +50,7 @@ import jline.console.history.History;
  * </p>
  */
 public class TextAreaReadline implements KeyListener {
-	private static final String EMPTY_LINE = "";
+	static final String EMPTY_LINE = "";
 
 	private JTextComponent area;
 	private volatile int startPos;
@@ -55,159 +62,81 @@ public class TextAreaReadline implements KeyListener {
 	public volatile MutableAttributeSet resultStyle;
 
 	private JComboBox<String> completeCombo;
+	private final CompletionListModel completeModel = new CompletionListModel();
 	private BasicComboPopup completePopup;
+	private final CompletionCache completions = new CompletionCache();
+
+	static final int DEFAULT_COMPLETION_TIMEOUT = 5000;
+
+	/**
+	 * The thread asking the completer for candidates, started when needed
+	 */
+	private final ExecutorService completionExecutor = new ThreadPoolExecutor(0, 1, 60L, TimeUnit.SECONDS,
+			new LinkedBlockingQueue<>(), r -> {
+				Thread thread = new Thread(r, "TextAreaReadline-completion");
+				thread.setDaemon(true);
+				return thread;
+			});
+	/**
+	 * The number of completion requests started or cancelled; a request's result
+	 * is stale once this changes
+	 */
+	private int completionRequest;
+	private Future<?> completionTask;
+	private volatile int completionTimeout = DEFAULT_COMPLETION_TIMEOUT;
+	private final Timer completionTimer = new Timer(DEFAULT_COMPLETION_TIMEOUT, e -> cancelCompletion());
 	private int start;
 	private int end;
 
 	private final InputStream inputStream = new Input();
+	private final ReadableByteChannel inputChannel = new InputChannel();
+	private volatile boolean inputClosed = false;
+	private final OutputBuffer outputBuffer = new OutputBuffer(this::writeLineUnsafe);
 	private final OutputStream outputStream = new Output();
-
-	private static class InputBuffer {
-		public final byte[] bytes;
-		public int offset = 0;
-
-		public InputBuffer(byte[] bytes) {
-			this.bytes = bytes;
-		}
-	}
+	private final Writer writer = new OutputWriter();
 
 	public enum Channel {
 		AVAILABLE, READ, BUFFER, EMPTY, LINE, GET_LINE, SHUTDOWN, FINISHED
 	}
 
-	private static class ReadRequest {
-		public final byte[] b;
-		public final int off;
-		public final int len;
-
-		public ReadRequest(byte[] b, int off, int len) {
-			this.b = b;
-			this.off = off;
-			this.len = len;
-		}
-
-		public int perform(Join join, InputBuffer buffer) {
-			final int available = buffer.bytes.length - buffer.offset;
-			int len = this.len;
-			if (len > available) {
-				len = available;
-			}
-			if (len == available) {
-				join.send(Channel.EMPTY, null);
-			} else {
-				buffer.offset += len;
-				join.send(Channel.BUFFER, buffer);
-			}
-			System.arraycopy(buffer.bytes, buffer.offset, this.b, this.off, len);
-			return len;
-		}
+	/**
+	 * The implementation of the channel handing entered lines to readers
+	 */
+	public enum InputMode {
+		/**
+		 * A channel built on {@link Join}
+		 */
+		JOIN,
+		/**
+		 * A lock-free single-producer, single-consumer queue
+		 */
+		LOCK_FREE
 	}
 
-	private static final Join.Spec INPUT_SPEC = new Join.Spec() {
-		{
-			addReaction(new Join.FastReaction(Channel.SHUTDOWN, Channel.BUFFER) {
-				@Override
-				public void react(Join join, Object[] args) {
-					join.send(Channel.FINISHED, null);
-				}
-			});
-			addReaction(new Join.FastReaction(Channel.SHUTDOWN, Channel.EMPTY) {
-				@Override
-				public void react(Join join, Object[] args) {
-					join.send(Channel.FINISHED, null);
-				}
-			});
-			addReaction(new Join.FastReaction(Channel.SHUTDOWN, Channel.FINISHED) {
-				@Override
-				public void react(Join join, Object[] args) {
-					join.send(Channel.FINISHED, null);
-				}
-			});
-
-			addReaction(new Join.FastReaction(Channel.FINISHED, Channel.LINE) {
-				@Override
-				public void react(Join join, Object[] args) {
-					join.send(Channel.FINISHED, null);
-				}
-			});
-
-			addReaction(new Join.SyncReaction(Channel.AVAILABLE, Channel.BUFFER) {
-				@Override
-				public Object react(Join join, Object[] args) {
-					InputBuffer buffer = (InputBuffer) args[1];
-					join.send(Channel.BUFFER, buffer);
-					return buffer.bytes.length - buffer.offset;
-				}
-			});
-			addReaction(new Join.SyncReaction(Channel.AVAILABLE, Channel.EMPTY) {
-				@Override
-				public Object react(Join join, Object[] args) {
-					join.send(Channel.EMPTY, null);
-					return 0;
-				}
-			});
-			addReaction(new Join.SyncReaction(Channel.AVAILABLE, Channel.FINISHED) {
-				@Override
-				public Object react(Join join, Object[] args) {
-					join.send(Channel.FINISHED, null);
-					return 0;
-				}
-			});
-
-			addReaction(new Join.SyncReaction(Channel.READ, Channel.BUFFER) {
-				@Override
-				public Object react(Join join, Object[] args) {
-					return ((ReadRequest) args[0]).perform(join, (InputBuffer) args[1]);
-				}
-			});
-			addReaction(new Join.SyncReaction(Channel.READ, Channel.EMPTY, Channel.LINE) {
-				@Override
-				public Object react(Join join, Object[] args) {
-					final ReadRequest request = (ReadRequest) args[0];
-					final String line = (String) args[2];
-					if (line.length() != 0) {
-						byte[] bytes = UTF8Coder.encodeUTF8(line);
-						return request.perform(join, new InputBuffer(bytes));
-					} else {
-						return -1;
-					}
-				}
-			});
-			addReaction(new Join.SyncReaction(Channel.READ, Channel.FINISHED) {
-				@Override
-				public Object react(Join join, Object[] args) {
-					join.send(Channel.FINISHED, null);
-					return -1;
-				}
-			});
-
-			addReaction(new Join.SyncReaction(Channel.GET_LINE, Channel.LINE) {
-				@Override
-				public Object react(Join join, Object[] args) {
-					return args[1];
-				}
-			});
-			addReaction(new Join.SyncReaction(Channel.GET_LINE, Channel.FINISHED) {
-				@Override
-				public Object react(Join join, Object[] args) {
-					join.send(Channel.FINISHED, null);
-					return EMPTY_LINE;
-				}
-			});
-		}
-	};
-
 	private static final int MAX_DOC_SIZE = 100000;
-	private final Join inputJoin = INPUT_SPEC.createJoin();
+	private final ConsoleInput input;
 
 	public TextAreaReadline(JTextComponent area) {
 		this(area, null);
 	}
 
 	public TextAreaReadline(JTextComponent area, final String message) {
+		this(area, message, InputMode.JOIN);
+	}
+
+	/**
+	 * Constructs a new {@link TextAreaReadline} instance.
+	 * 
+	 * @param area      the text component to control
+	 * @param message   a message to display before the first prompt or
+	 *                  {@code null}
+	 * @param inputMode the implementation of the channel handing entered lines to
+	 *                  {@link #readLine(String)} and {@link #getInputStream()}
+	 */
+	public TextAreaReadline(JTextComponent area, final String message, InputMode inputMode) {
 		this.area = area;
 
-		inputJoin.send(Channel.EMPTY, null);
+		input = ConsoleInput.create(inputMode);
 
 		area.addKeyListener(this);
 
@@ -249,10 +178,11 @@ public class TextAreaReadline implements KeyListener {
 		StyleConstants.setItalic(resultStyle, true);
 		StyleConstants.setForeground(resultStyle, new Color(0x20, 0x4a, 0x87));
 
-		completeCombo = new JComboBox<>();
+		completeCombo = new JComboBox<>(completeModel);
 		completeCombo.setRenderer(new DefaultListCellRenderer()); // no silly ticks!
 		completeCombo.addActionListener(this::handleComboBoxActionEvent);
 		completePopup = createCompletePopup();
+		completionTimer.setRepeats(false);
 
 		if (message != null) {
 			final MutableAttributeSet messageStyle = new SimpleAttributeSet();
@@ -293,6 +223,39 @@ public class TextAreaReadline implements KeyListener {
 		}
 	}
 
+	/**
+	 * Abandons the completion request in progress, if any, interrupting the
+	 * thread asking the completer.
+	 */
+	private void cancelCompletion() {
+		completionRequest++;
+		completionTimer.stop();
+		if (completionTask != null) {
+			completionTask.cancel(true);
+			completionTask = null;
+		}
+	}
+
+	/**
+	 * Returns the number of milliseconds to wait for the completer before
+	 * abandoning a completion.
+	 *
+	 * @return the completion timeout in milliseconds or {@code 0} if unlimited
+	 */
+	public int getCompletionTimeout() {
+		return completionTimeout;
+	}
+
+	/**
+	 * Returns a channel view of the input, reading the same bytes as
+	 * {@link #getInputStream()}. Closing either closes both.
+	 *
+	 * @return a channel reading the lines entered as UTF-8 bytes
+	 */
+	public ReadableByteChannel getInputChannel() {
+		return inputChannel;
+	}
+
 	public InputStream getInputStream() {
 		return inputStream;
 	}
@@ -301,13 +264,102 @@ public class TextAreaReadline implements KeyListener {
 		return outputStream;
 	}
 
+	/**
+	 * Returns a writer appending characters to the console output as they are,
+	 * without the encoding and decoding that writing through
+	 * {@link #getOutputStream()} costs.
+	 * <p>
+	 * Output is inserted on the schedule of {@link #setOutputFlushInterval(int)}
+	 * and before every prompt, so that the output of a whole prompt cycle
+	 * coalesces. Flushing the writer inserts the output written so far and waits
+	 * for the event dispatch thread to do so.
+	 * </p>
+	 *
+	 * @return the console output as a writer
+	 */
+	public Writer getWriter() {
+		return writer;
+	}
+
+	/**
+	 * Returns the maximum number of characters of output buffered before writers
+	 * block waiting for the event dispatch thread to insert them.
+	 *
+	 * @return the output buffer size in characters
+	 */
+	public int getOutputBufferSize() {
+		return outputBuffer.getCapacity();
+	}
+
+	/**
+	 * Returns the number of milliseconds output may wait in the output buffer
+	 * before the event dispatch thread inserts it into the document.
+	 *
+	 * @return the output flush interval in milliseconds
+	 */
+	public int getOutputFlushInterval() {
+		return outputBuffer.getFlushInterval();
+	}
+
+	/**
+	 * Sets the number of milliseconds to wait for the completer before abandoning
+	 * a completion. The completer runs off the event dispatch thread, so a busy
+	 * interpreter delays the completion popup but never the user interface.
+	 *
+	 * @param millis the completion timeout in milliseconds; {@code 0} waits
+	 *               until the next keystroke
+	 * @throws IllegalArgumentException if {@code millis} is negative
+	 */
+	public void setCompletionTimeout(int millis) {
+		if (millis < 0)
+			throw new IllegalArgumentException("The completion timeout must not be negative: " + millis);
+		completionTimeout = millis;
+	}
+
+	/**
+	 * Sets the maximum number of characters of output buffered before writers
+	 * block waiting for the event dispatch thread to insert them.
+	 *
+	 * @param size the output buffer size in characters
+	 * @throws IllegalArgumentException if {@code size} is not positive
+	 */
+	public void setOutputBufferSize(int size) {
+		outputBuffer.setCapacity(size);
+	}
+
+	/**
+	 * Sets the number of milliseconds output may wait in the output buffer before
+	 * the event dispatch thread inserts it into the document. All output written
+	 * within this interval coalesces into one insert per style.
+	 *
+	 * @param millis the output flush interval in milliseconds; {@code 0} flushes
+	 *               as soon as the event dispatch thread is free
+	 * @throws IllegalArgumentException if {@code millis} is negative
+	 */
+	public void setOutputFlushInterval(int millis) {
+		outputBuffer.setFlushInterval(millis);
+	}
+
 	private Completer completer;
 
 	private History history;
 
+	private volatile HistorySearch historySearch;
+
+	/**
+	 * Whether a reverse incremental search of the history is in progress
+	 */
+	private boolean searching;
+	private boolean searchFailed;
+	private int searchMatch;
+	private String searchOriginal;
+	private final StringBuilder searchText = new StringBuilder();
+
 	public void inject(Completer newCompleter, History newHistory) {
 		this.completer = newCompleter;
 		this.history = newHistory;
+		this.historySearch = newHistory == null ? null : new HistorySearch(newHistory);
+		completions.clear();
 	}
 
 	protected void completeAction(KeyEvent event) {
@@ -319,25 +371,70 @@ public class TextAreaReadline implements KeyListener {
 		if (completePopup.isVisible())
 			return;
 
-		List<CharSequence> candidates = new LinkedList<>();
-		String bufstr = null;
-		try {
-			bufstr = area.getText(startPos, area.getCaretPosition() - startPos);
-		} catch (BadLocationException e) {
+		String bufstr = getTextBeforeCaret();
+		if (bufstr == null)
 			return;
+
+		// Narrow the candidates of the last completion when more of the same word
+		// has been typed since, or else ask the completer off the EDT.
+		if (completions.narrow(bufstr))
+			showCompletions();
+		else
+			requestCompletion(bufstr);
+	}
+
+	private void requestCompletion(String bufstr) {
+		cancelCompletion();
+		final int request = completionRequest;
+		final Completer completer = this.completer;
+		completionTask = completionExecutor.submit(() -> {
+			final CompletionCache.Completion completion = CompletionCache.complete(completer, bufstr);
+			EventQueue.invokeLater(() -> {
+				// Drop the result if a keystroke or the timeout cancelled the request, or if
+				// the text changed some other way since.
+				if (request != completionRequest || !bufstr.equals(getTextBeforeCaret()))
+					return;
+				completionTimer.stop();
+				completionTask = null;
+				completions.update(completion);
+				showCompletions();
+			});
+		});
+		final int timeout = completionTimeout;
+		if (timeout > 0) {
+			completionTimer.setInitialDelay(timeout);
+			completionTimer.restart();
 		}
+	}
 
-		int cursor = area.getCaretPosition() - startPos;
+	private String getTextBeforeCaret() {
+		try {
+			return area.getText(startPos, area.getCaretPosition() - startPos);
+		} catch (BadLocationException e) {
+			return null;
+		}
+	}
 
-		int position = completer.complete(bufstr, cursor, candidates);
+	/**
+	 * Completes the word before the caret with the candidates
+	 * {@link #completions} holds, showing them in a popup if there are several.
+	 */
+	private void showCompletions() {
+		String bufstr = getTextBeforeCaret();
+		if (bufstr == null)
+			return;
+		int position = completions.getPosition();
+		String[] candidates = completions.getCandidates();
+		int from = completions.getFrom();
+		int count = completions.getTo() - from;
 
 		// no candidates? Fail.
-		if (candidates.isEmpty()) {
+		if (count == 0) {
 			return;
 		}
 
-		if (candidates.size() == 1) {
-			replaceText(startPos + position, area.getCaretPosition(), (String) candidates.get(0));
+		if (count == 1) {
+			replaceText(startPos + position, area.getCaretPosition(), candidates[from]);
 			return;
 		}
 
@@ -350,19 +447,21 @@ public class TextAreaReadline implements KeyListener {
 		int cutoff = bufstr.substring(position).lastIndexOf('.') + 1;
 		start += cutoff;
 
-		if (candidates.size() < 10) {
-			completePopup.getList().setVisibleRowCount(candidates.size());
+		if (count < 10) {
+			completePopup.getList().setVisibleRowCount(count);
 		} else {
 			completePopup.getList().setVisibleRowCount(10);
 		}
 
-		completeCombo.removeAllItems();
-		for (Iterator<CharSequence> i = candidates.iterator(); i.hasNext();) {
-			String item = (String) i.next();
-			if (cutoff != 0)
-				item = item.substring(cutoff);
-			completeCombo.addItem(item);
-		}
+		// Size the popup by its longest item instead of having the list measure every
+		// item.
+		int longest = from;
+		for (int i = from + 1; i < from + count; i++)
+			if (candidates[i].length() > candidates[longest].length())
+				longest = i;
+		completePopup.getList().setPrototypeCellValue(candidates[longest].substring(cutoff));
+
+		completeModel.setItems(candidates, from, from + count, cutoff);
 
 		completePopup.show(area, pos.x, pos.y + area.getFontMetrics(area.getFont()).getHeight());
 	}
@@ -451,11 +550,15 @@ public class TextAreaReadline implements KeyListener {
 			return;
 		}
 
+		outputBuffer.flush();
 		append("\n", null);
 
+		// The line may define what the completer would return.
+		completions.clear();
+
 		String line = getLine();
 		startPos = area.getDocument().getLength();
-		inputJoin.send(Channel.LINE, line);
+		input.sendLine(line);
 	}
 
 	public String readLine(final String prompt) {
@@ -466,6 +569,8 @@ public class TextAreaReadline implements KeyListener {
 		EventQueue.invokeLater(new Runnable() {
 			@Override
 			public void run() {
+				// Show all output written before this prompt first.
+				outputBuffer.flush();
 				append(prompt.trim(), promptStyle);
 				append(" ", inputStyle); // hack to get right style for input
 				area.setCaretPosition(area.getDocument().getLength());
@@ -474,7 +579,13 @@ public class TextAreaReadline implements KeyListener {
 			}
 		});
 
-		final String line = (String) inputJoin.call(Channel.GET_LINE, null);
+		// Index the entries added since the last prompt while the user types, so
+		// that searching never has to.
+		HistorySearch search = historySearch;
+		if (search != null)
+			search.update();
+
+		final String line = input.readLine();
 		if (line.length() > 0) {
 			// enterAction appends "\n" to the end of the line, but we do not want this
 			// new-line character when retrieving a line.
@@ -487,6 +598,11 @@ public class TextAreaReadline implements KeyListener {
 	@Override
 	public void keyPressed(KeyEvent event) {
 		int code = event.getKeyCode();
+		if (!isModifier(code))
+			// A newer keystroke makes a pending completion stale.
+			cancelCompletion();
+		if (searching && searchKeyPressed(event))
+			return;
 		switch (code) {
 		case KeyEvent.VK_TAB:
 			completeAction(event);
@@ -514,7 +630,13 @@ public class TextAreaReadline implements KeyListener {
 		case KeyEvent.VK_D:
 			if ((event.getModifiersEx() & KeyEvent.CTRL_DOWN_MASK) != 0) {
 				event.consume();
-				inputJoin.send(Channel.LINE, EMPTY_LINE);
+				input.sendLine(EMPTY_LINE);
+			}
+			break;
+		case KeyEvent.VK_R:
+			if (event.isControlDown()) {
+				event.consume();
+				startSearch();
 			}
 			break;
 		}
@@ -523,16 +645,124 @@ public class TextAreaReadline implements KeyListener {
 			completePopup.setVisible(false);
 	}
 
+	private static boolean isModifier(int code) {
+		switch (code) {
+		case KeyEvent.VK_ALT:
+		case KeyEvent.VK_ALT_GRAPH:
+		case KeyEvent.VK_CONTROL:
+		case KeyEvent.VK_META:
+		case KeyEvent.VK_SHIFT:
+			return true;
+		default:
+			return false;
+		}
+	}
+
 	@Override
 	public void keyReleased(KeyEvent arg0) {
 	}
 
 	@Override
-	public void keyTyped(KeyEvent arg0) {
+	public void keyTyped(KeyEvent event) {
+		if (!searching || !isSearchText(event))
+			return;
+		event.consume();
+		searchText.append(event.getKeyChar());
+		// The current match may still match the longer text.
+		searchHistory(searchMatch >= 0 ? searchMatch + 1 : Integer.MAX_VALUE);
+	}
+
+	private static boolean isSearchText(KeyEvent event) {
+		char c = event.getKeyChar();
+		return c != KeyEvent.CHAR_UNDEFINED && c >= ' ' && c != 0x7f && !event.isControlDown() && !event.isMetaDown();
+	}
+
+	/**
+	 * Ends a reverse incremental search of the history.
+	 *
+	 * @param accept whether to replace the line with the match instead of
+	 *               restoring the line searching started from
+	 */
+	private void endSearch(boolean accept) {
+		searching = false;
+		String match = accept && searchMatch >= 0 ? historySearch.get(searchMatch) : null;
+		replaceText(startPos, area.getDocument().getLength(), match != null ? match : searchOriginal);
+		if (match != null)
+			history.moveTo(searchMatch);
+	}
+
+	/**
+	 * Handles a key pressed during a reverse incremental search of the history:
+	 * Ctrl-R finds the next older match, Backspace shortens the text searched
+	 * for, and Escape or Ctrl-G cancel the search. Any other key that does not
+	 * type text accepts the match.
+	 *
+	 * @return {@code true} if the key was handled, or {@code false} if the search
+	 *         ended and the key should be handled as usual
+	 */
+	private boolean searchKeyPressed(KeyEvent event) {
+		int code = event.getKeyCode();
+		if (event.isControlDown() && code == KeyEvent.VK_R) {
+			event.consume();
+			searchHistory(searchMatch >= 0 ? searchMatch : Integer.MAX_VALUE);
+			return true;
+		}
+		if (code == KeyEvent.VK_ESCAPE || (event.isControlDown() && code == KeyEvent.VK_G)) {
+			event.consume();
+			endSearch(false);
+			return true;
+		}
+		if (code == KeyEvent.VK_BACK_SPACE) {
+			event.consume();
+			if (searchText.length() > 0) {
+				searchText.setLength(searchText.length() - 1);
+				searchMatch = -1;
+				searchHistory(Integer.MAX_VALUE);
+			}
+			return true;
+		}
+		if (isModifier(code) || isSearchText(event))
+			// keyTyped adds the text.
+			return true;
+		endSearch(true);
+		return false;
+	}
+
+	/**
+	 * Finds the newest entry containing the text searched for, showing it if
+	 * found.
+	 *
+	 * @param before the history index after the newest entry to consider
+	 */
+	private void searchHistory(int before) {
+		int match = historySearch.search(searchText.toString(), before);
+		searchFailed = match < 0 && searchText.length() > 0;
+		if (match >= 0)
+			searchMatch = match;
+		showSearch();
+	}
+
+	private void showSearch() {
+		String match = searchMatch >= 0 ? historySearch.get(searchMatch) : null;
+		replaceText(startPos, area.getDocument().getLength(),
+				(searchFailed ? "(failed reverse-i-search)`" : "(reverse-i-search)`") + searchText + "': "
+						+ (match != null ? match : ""));
+	}
+
+	private void startSearch() {
+		if (historySearch == null)
+			return;
+		searching = true;
+		searchOriginal = getLine();
+		searchText.setLength(0);
+		searchMatch = -1;
+		searchFailed = false;
+		showSearch();
 	}
 
 	public void shutdown() {
-		inputJoin.send(Channel.SHUTDOWN, null);
+		completionExecutor.shutdownNow();
+		input.shutdown();
 	}
 
 	// Output methods
@@ -542,6 +772,11 @@ public class TextAreaReadline implements KeyListener {
 			Document doc = area.getDocument();
 			doc.insertString(doc.getLength(), toAppend, style);
 
+			if (doc instanceof ScrollbackDocument) {
+				startPos -= ((ScrollbackDocument) doc).trim(startPos);
+				return;
+			}
+
 			// Cut the document to fit into the MAX_DOC_SIZE.
 			// See JRUBY-4237.
 			int extra = doc.getLength() - MAX_DOC_SIZE;
@@ -554,59 +789,46 @@ public class TextAreaReadline implements KeyListener {
 		}
 	}
 
-	private void writeLineUnsafe(final String line) {
-		if (line.startsWith("=>")) {
-			append(line, resultStyle);
-		} else {
-			append(line, outputStyle);
-		}
+	private void writeLineUnsafe(final String line, final AttributeSet style) {
+		append(line, style);
 		startPos = area.getDocument().getLength();
 	}
 
-	private void writeLine(final String line) {
+	private void closeInput() {
+		inputClosed = true;
+		input.shutdown();
+	}
+
+	private void ensureInputOpen() throws IOException {
+		if (inputClosed) {
+			throw new IOException("Stream is closed");
+		}
+	}
+
+	private static void ensureNotDispatchThread() throws IOException {
 		if (EventQueue.isDispatchThread()) {
-			writeLineUnsafe(line);
-		} else {
-			EventQueue.invokeLater(new Runnable() {
-				@Override
-				public void run() {
-					writeLineUnsafe(line);
-				}
-			});
+			throw new IOException("Cannot call read from event dispatch thread");
 		}
 	}
 
 	private class Input extends InputStream {
-		private volatile boolean closed = false;
+		private final byte[] single = new byte[1];
 
 		@Override
 		public int available() throws IOException {
-			if (closed) {
-				throw new IOException("Stream is closed");
-			}
-
-			return (Integer) inputJoin.call(Channel.AVAILABLE, null);
+			ensureInputOpen();
+			return input.available();
 		}
 
 		@Override
-		public int read() throws IOException {
-			byte[] b = new byte[1];
-			if (read(b, 0, 1) == 1) {
-				return b[0];
-			} else {
-				return -1;
-			}
+		public synchronized int read() throws IOException {
+			return read(single, 0, 1) == 1 ? single[0] & 0xff : -1;
 		}
 
 		@Override
 		public int read(byte[] b, int off, int len) throws IOException {
-			if (closed) {
-				throw new IOException("Stream is closed");
-			}
-
-			if (EventQueue.isDispatchThread()) {
-				throw new IOException("Cannot call read from event dispatch thread");
-			}
+			ensureInputOpen();
+			ensureNotDispatchThread();
 
 			if (b == null) {
 				throw new NullPointerException();
@@ -618,31 +840,120 @@ public class TextAreaReadline implements KeyListener {
 				return 0;
 			}
 
-			final ReadRequest request = new ReadRequest(b, off, len);
-			return (Integer) inputJoin.call(Channel.READ, request);
+			return input.read(b, off, len);
+		}
+
+		@Override
+		public long transferTo(OutputStream out) throws IOException {
+			final byte[] b = new byte[InputBuffer.CAPACITY];
+			long transferred = 0;
+			for (int read; (read = read(b, 0, b.length)) >= 0;) {
+				out.write(b, 0, read);
+				transferred += read;
+			}
+			return transferred;
+		}
+
+		@Override
+		public void close() {
+			closeInput();
+		}
+	}
+
+	private class InputChannel implements ReadableByteChannel {
+		@Override
+		public void close() {
+			closeInput();
+		}
+
+		@Override
+		public boolean isOpen() {
+			return !inputClosed;
+		}
+
+		@Override
+		public int read(ByteBuffer dst) throws IOException {
+			if (inputClosed) {
+				throw new ClosedChannelException();
+			}
+			ensureNotDispatchThread();
+
+			if (!dst.hasRemaining()) {
+				return 0;
+			}
+
+			return input.read(dst);
+		}
+	}
+
+	private class OutputWriter extends Writer {
+		private AttributeSet style(char first, char second) {
+			// Style the write as a result if it starts with IRB's "=>".
+			return first == '=' && second == '>' ? resultStyle : outputStyle;
+		}
+
+		@Override
+		public void write(char[] cbuf, int off, int len) throws IOException {
+			if (off < 0 || len < 0 || off + len > cbuf.length) {
+				throw new IndexOutOfBoundsException();
+			}
+			outputBuffer.append(cbuf, off, len, len >= 2 ? style(cbuf[off], cbuf[off + 1]) : outputStyle);
+		}
+
+		@Override
+		public void write(String str, int off, int len) throws IOException {
+			if (off < 0 || len < 0 || off + len > str.length()) {
+				throw new IndexOutOfBoundsException();
+			}
+			outputBuffer.append(off == 0 && len == str.length() ? str : str.substring(off, off + len),
+					len >= 2 ? style(str.charAt(off), str.charAt(off + 1)) : outputStyle);
+		}
+
+		@Override
+		public void flush() throws IOException {
+			outputBuffer.flushAndWait();
 		}
 
 		@Override
 		public void close() {
-			closed = true;
-			inputJoin.send(Channel.SHUTDOWN, null);
+			// The console owns the output.
 		}
 	}
 
 	private class Output extends OutputStream {
+		private final UTF8StreamDecoder decoder = new UTF8StreamDecoder(outputBuffer::append);
+
+		private final byte[] single = new byte[1];
+
 		@Override
 		public void write(int b) throws IOException {
-			writeLine("" + b);
+			synchronized (decoder) {
+				single[0] = (byte) b;
+				write(single, 0, 1);
+			}
 		}
 
 		@Override
-		public void write(byte[] b, int off, int len) {
-			writeLine(UTF8Coder.decodeUTF8(b, off, len));
+		public void write(byte[] b, int off, int len) throws IOException {
+			if (off < 0 || len < 0 || off + len > b.length) {
+				throw new IndexOutOfBoundsException();
+			}
+			synchronized (decoder) {
+				// Style the write as a result if it starts with IRB's "=>".
+				final AttributeSet style = !decoder.hasLeftover() && len >= 2 && b[off] == '=' && b[off + 1] == '>'
+						? resultStyle
+						: outputStyle;
+				decoder.write(b, off, len, style);
+			}
 		}
 
+		/**
+		 * Inserts the output written so far into the document, waiting for the
+		 * event dispatch thread to do so.
+		 */
 		@Override
-		public void write(byte[] b) {
-			writeLine(UTF8Coder.decodeUTF8(b));
+		public void flush() throws IOException {
+			outputBuffer.flushAndWait();
 		}
 	}
 }
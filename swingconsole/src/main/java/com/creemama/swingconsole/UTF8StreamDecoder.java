@@ -0,0 +1,110 @@
+package com.creemama.swingconsole;
+
+import static com.headius.backport9.buffer.Buffers.clearBuffer;
+import static com.headius.backport9.buffer.Buffers.flipBuffer;
+
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+
+import javax.swing.text.AttributeSet;
+
+/**
+ * An incremental UTF-8 decoder for a stream of output written in chunks.
+ * <p>
+ * Unlike {@link UTF8Coder#decodeUTF8(byte[], int, int)}, the decoder keeps the
+ * bytes of a multibyte character split across two writes until the rest of it
+ * arrives instead of replacing them. Bytes are decoded through reusable
+ * buffers straight into a {@link Sink}, so a write allocates nothing.
+ * </p>
+ * <p>
+ * This class is not thread-safe.
+ * </p>
+ */
+class UTF8StreamDecoder {
+	/**
+	 * The receiver of decoded characters
+	 */
+	@FunctionalInterface
+	interface Sink {
+		/**
+		 * Appends decoded characters. The array is reused once this method
+		 * returns.
+		 *
+		 * @param chars  the decoded characters
+		 * @param offset the offset of the first character
+		 * @param length the number of characters
+		 * @param style  the style the characters were written with
+		 * @throws InterruptedIOException if interrupted while appending
+		 */
+		void append(char[] chars, int offset, int length, AttributeSet style) throws InterruptedIOException;
+	}
+
+	static final int CAPACITY = 8192;
+
+	/**
+	 * The bytes not yet decoded, ready to be written to
+	 */
+	private final ByteBuffer bytes = ByteBuffer.allocate(CAPACITY);
+
+	private final CharBuffer chars = CharBuffer.allocate(CAPACITY);
+
+	private final CharsetDecoder decoder = UTF8Coder.UTF8.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+			.onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+	private final Sink sink;
+
+	UTF8StreamDecoder(Sink sink) {
+		this.sink = sink;
+	}
+
+	private void drain(AttributeSet style) throws InterruptedIOException {
+		if (chars.position() == 0)
+			return;
+		flipBuffer(chars);
+		try {
+			sink.append(chars.array(), chars.arrayOffset(), chars.limit(), style);
+		} finally {
+			clearBuffer(chars);
+		}
+	}
+
+	/**
+	 * Returns whether the decoder holds the leading bytes of a character whose
+	 * remaining bytes have not been written yet.
+	 *
+	 * @return {@code true} if a character is incomplete
+	 */
+	boolean hasLeftover() {
+		return bytes.position() > 0;
+	}
+
+	/**
+	 * Decodes bytes and appends the complete characters to the sink.
+	 *
+	 * @param b     the bytes to decode
+	 * @param off   the offset of the first byte
+	 * @param len   the number of bytes
+	 * @param style the style to append the characters with
+	 * @throws InterruptedIOException if interrupted while appending
+	 */
+	void write(byte[] b, int off, int len, AttributeSet style) throws InterruptedIOException {
+		while (len > 0) {
+			final int n = Math.min(len, bytes.remaining());
+			bytes.put(b, off, n);
+			off += n;
+			len -= n;
+			flipBuffer(bytes);
+			try {
+				while (decoder.decode(bytes, chars, false).isOverflow())
+					drain(style);
+			} finally {
+				// Keep the bytes of an incomplete character for the next write.
+				bytes.compact();
+			}
+		}
+		drain(style);
+	}
+}
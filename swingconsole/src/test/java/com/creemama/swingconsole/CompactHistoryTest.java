@@ -0,0 +1,117 @@
+package com.creemama.swingconsole;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import jline.console.history.History.Entry;
+
+public class CompactHistoryTest {
+	private static String repeat(String s, int count) {
+		StringBuilder sb = new StringBuilder(s.length() * count);
+		for (int i = 0; i < count; i++)
+			sb.append(s);
+		return sb.toString();
+	}
+
+	private static List<String> values(CompactHistory history) {
+		List<String> values = new ArrayList<>();
+		for (Entry entry : history)
+			values.add(entry.value().toString());
+		return values;
+	}
+
+	@Test
+	public void consecutiveDuplicatesCollapse() {
+		CompactHistory history = new CompactHistory();
+		history.add("a");
+		history.add("a");
+		history.add("b");
+		history.add("a");
+		assertEquals("[a, b, a]", values(history).toString());
+
+		history.setIgnoreDuplicates(false);
+		history.add("a");
+		assertEquals("[a, b, a, a]", values(history).toString());
+	}
+
+	@Test
+	public void sharedTextsStayIndependent() {
+		CompactHistory history = new CompactHistory();
+		for (int i = 0; i < 100; i++) {
+			history.add("x");
+			history.add("y");
+		}
+		assertEquals(200, history.size());
+		history.set(0, "z");
+		assertEquals("z", history.get(0));
+		assertEquals("x", history.get(2));
+		assertEquals("x", history.remove(2));
+		assertEquals("y", history.get(2));
+		assertEquals(199, history.size());
+	}
+
+	@Test
+	public void arenaGrowsForLongAndManyTexts() {
+		CompactHistory history = new CompactHistory();
+		List<String> expected = new ArrayList<>();
+		for (int i = 0; i < 300; i++) {
+			String entry = i % 50 == 0 ? repeat("é€" + i, 500) : "entry " + i;
+			history.add(entry);
+			expected.add(entry);
+		}
+		assertEquals(expected, values(history));
+		for (int i = 0; i < expected.size(); i++)
+			assertEquals(expected.get(i), history.get(i));
+	}
+
+	@Test
+	public void trimmingDropsUnusedTexts() {
+		CompactHistory history = new CompactHistory();
+		history.setMaxSize(10);
+		for (int i = 0; i < 1000; i++)
+			history.add("entry " + i % 500);
+		assertEquals(10, history.size());
+		assertEquals(1000, history.index());
+		for (int i = 990; i < 1000; i++)
+			assertEquals("entry " + i % 500, history.get(i));
+
+		// Add both texts still in use and texts no entry refers to any more.
+		history.add("entry 995");
+		history.add("entry 3");
+		history.add("entry 42");
+		assertEquals("entry 995", history.get(1000));
+		assertEquals("entry 3", history.get(1001));
+		assertEquals("entry 42", history.get(1002));
+		assertEquals("entry 493", history.get(993));
+	}
+
+	@Test
+	public void navigationFollowsMemoryHistory() {
+		CompactHistory history = new CompactHistory();
+		history.add("a");
+		history.add("b");
+		history.add("c");
+		assertEquals("", history.current());
+		assertTrue(history.previous());
+		assertEquals("c", history.current());
+		assertTrue(history.moveToFirst());
+		assertEquals("a", history.current());
+		assertFalse(history.previous());
+		assertTrue(history.moveToLast());
+		assertEquals("c", history.current());
+		history.replace("d");
+		assertEquals("[a, b, d]", values(history).toString());
+
+		history.clear();
+		assertTrue(history.isEmpty());
+		assertEquals(0, history.index());
+		history.add("a");
+		assertEquals("a", history.get(0));
+	}
+}
@@ -0,0 +1,109 @@
+package com.creemama.swingconsole;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import jline.console.completer.Completer;
+
+public class CompletionCacheTest {
+	/**
+	 * Completes the last word of a buffer with the given words, in their order,
+	 * counting the calls
+	 */
+	private static class WordCompleter implements Completer {
+		int calls;
+
+		final private String[] words;
+
+		WordCompleter(String... words) {
+			this.words = words;
+		}
+
+		@Override
+		public int complete(String buffer, int cursor, List<CharSequence> candidates) {
+			calls++;
+			int position = buffer.lastIndexOf(' ') + 1;
+			String word = buffer.substring(position);
+			for (String candidate : words)
+				if (candidate.startsWith(word))
+					candidates.add(candidate);
+			return position;
+		}
+	}
+
+	private static String[] candidates(CompletionCache cache) {
+		return Arrays.copyOfRange(cache.getCandidates(), cache.getFrom(), cache.getTo());
+	}
+
+	private static CompletionCache complete(Completer completer, String buffer) {
+		CompletionCache cache = new CompletionCache();
+		cache.update(CompletionCache.complete(completer, buffer));
+		return cache;
+	}
+
+	@Test
+	public void completeKeepsTheCompletersOrderWithoutDuplicates() {
+		CompletionCache cache = complete(new WordCompleter("print", "pow", "pass", "print", "property"), "x = p");
+		assertArrayEquals(new String[] { "print", "pow", "pass", "property" }, candidates(cache));
+		assertEquals(4, cache.getPosition());
+	}
+
+	@Test
+	public void narrowKeepsTheCompletersOrder() {
+		WordCompleter completer = new WordCompleter("print", "pow", "pass", "property", "pr");
+		CompletionCache cache = complete(completer, "x = p");
+
+		assertTrue(cache.narrow("x = pr"));
+		assertArrayEquals(new String[] { "print", "property", "pr" }, candidates(cache));
+		assertTrue(cache.narrow("x = pro"));
+		assertArrayEquals(new String[] { "property" }, candidates(cache));
+		assertTrue(cache.narrow("x = prz"));
+		assertArrayEquals(new String[0], candidates(cache));
+		// Narrowing starts from the candidates the completer returned.
+		assertTrue(cache.narrow("x = p"));
+		assertArrayEquals(new String[] { "print", "pow", "pass", "property", "pr" }, candidates(cache));
+		assertEquals(1, completer.calls);
+	}
+
+	@Test
+	public void narrowOnlyExtendsTheWordCompleted() {
+		CompletionCache cache = complete(new WordCompleter("print", "pow"), "x = p");
+		assertFalse(cache.narrow("x = "));
+		assertFalse(cache.narrow("y = pr"));
+		assertFalse(cache.narrow("x = p."));
+		assertFalse(cache.narrow("x = p r"));
+		assertTrue(cache.narrow("x = p_1"));
+	}
+
+	@Test
+	public void narrowFailsAfterClear() {
+		CompletionCache cache = complete(new WordCompleter("print", "pow"), "p");
+		cache.clear();
+		assertFalse(cache.narrow("pr"));
+		assertArrayEquals(new String[0], candidates(cache));
+	}
+
+	@Test
+	public void candidatesNotStartingWithTheWordAreNotNarrowed() {
+		Completer corrector = (buffer, cursor, candidates) -> {
+			candidates.add("print");
+			return 0;
+		};
+		CompletionCache cache = complete(corrector, "pirnt");
+		assertArrayEquals(new String[] { "print" }, candidates(cache));
+		assertFalse(cache.narrow("pirntx"));
+	}
+
+	@Test
+	public void noPositionIsNotNarrowed() {
+		CompletionCache cache = complete((buffer, cursor, candidates) -> -1, "p");
+		assertFalse(cache.narrow("pr"));
+	}
+}
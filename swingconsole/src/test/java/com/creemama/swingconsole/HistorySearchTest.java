@@ -0,0 +1,103 @@
+package com.creemama.swingconsole;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import jline.console.history.History;
+import jline.console.history.MemoryHistory;
+
+public class HistorySearchTest {
+	private static <T extends History> T history(T history, String... entries) {
+		for (String entry : entries)
+			history.add(entry);
+		return history;
+	}
+
+	private static void walksOlderMatchesAndStartsOver(History history) {
+		HistorySearch search = new HistorySearch(history);
+		assertEquals(4, search.search("print", Integer.MAX_VALUE));
+		assertEquals(2, search.search("print", 4));
+		assertEquals(0, search.search("print", 2));
+		// No older match; searching again starts from the newest entry.
+		assertEquals(-1, search.search("print", 0));
+		assertEquals(4, search.search("print", Integer.MAX_VALUE));
+		assertEquals("print(y)", search.get(4));
+	}
+
+	@Test
+	public void searchWalksOlderMatchesAndStartsOver() {
+		walksOlderMatchesAndStartsOver(
+				history(new CompactHistory(), "print(x)", "x = 1", "print(x + 1)", "y = x", "print(y)"));
+	}
+
+	@Test
+	public void searchWalksOlderMatchesOfAHistoryWithoutRandomAccess() {
+		walksOlderMatchesAndStartsOver(
+				history(new MemoryHistory(), "print(x)", "x = 1", "print(x + 1)", "y = x", "print(y)"));
+	}
+
+	@Test
+	public void searchChecksEveryTrigramAndTheText() {
+		HistorySearch search = new HistorySearch(history(new CompactHistory(), "abcd", "bcde", "abcde", "cdab"));
+		assertEquals(2, search.search("abcde", Integer.MAX_VALUE));
+		// Both entries contain "abc" and "bcd", but only one contains "abcd".
+		assertEquals(2, search.search("abcd", Integer.MAX_VALUE));
+		assertEquals(0, search.search("abcd", 2));
+		assertEquals(-1, search.search("dabc", Integer.MAX_VALUE));
+		assertEquals(-1, search.search("xyz", Integer.MAX_VALUE));
+		assertEquals(-1, search.search("", Integer.MAX_VALUE));
+	}
+
+	@Test
+	public void searchFindsTextShorterThanATrigram() {
+		HistorySearch search = new HistorySearch(history(new CompactHistory(), "ab", "x", "cab"));
+		assertEquals(2, search.search("ab", Integer.MAX_VALUE));
+		assertEquals(0, search.search("ab", 2));
+		assertEquals(1, search.search("x", Integer.MAX_VALUE));
+	}
+
+	@Test
+	public void searchFindsEntriesAddedSinceTheLastSearch() {
+		CompactHistory history = history(new CompactHistory(), "import os");
+		HistorySearch search = new HistorySearch(history);
+		assertEquals(0, search.search("import", Integer.MAX_VALUE));
+		history.add("import sys");
+		assertEquals(1, search.search("import", Integer.MAX_VALUE));
+		assertEquals("import sys", search.get(1));
+	}
+
+	@Test
+	public void searchSkipsTrimmedEntries() {
+		CompactHistory history = history(new CompactHistory(), "print(1)", "print(2)", "x = 3");
+		HistorySearch search = new HistorySearch(history);
+		assertEquals(0, search.search("print(1", Integer.MAX_VALUE));
+
+		history.setMaxSize(2);
+		assertEquals(-1, search.search("print(1", Integer.MAX_VALUE));
+		assertEquals(1, search.search("print", Integer.MAX_VALUE));
+		assertEquals(-1, search.search("print", 1));
+		assertNull(search.get(0));
+
+		for (int i = 0; i < 2000; i++)
+			history.add("entry " + i);
+		assertEquals(2002, search.search("entry 1999", Integer.MAX_VALUE));
+		assertEquals(-1, search.search("entry 1997", Integer.MAX_VALUE));
+	}
+
+	@Test
+	public void searchStartsOverAfterEntriesAreRemoved() {
+		CompactHistory history = history(new CompactHistory(), "first", "second", "third");
+		HistorySearch search = new HistorySearch(history);
+		assertEquals(2, search.search("third", Integer.MAX_VALUE));
+
+		history.removeLast();
+		history.removeLast();
+		assertEquals(-1, search.search("third", Integer.MAX_VALUE));
+		assertEquals(-1, search.search("second", Integer.MAX_VALUE));
+		history.add("fourth");
+		assertEquals(1, search.search("fourth", Integer.MAX_VALUE));
+		assertEquals(0, search.search("first", Integer.MAX_VALUE));
+	}
+}
@@ -0,0 +1,195 @@
+package com.creemama.swingconsole;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ListIterator;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import jline.console.history.History.Entry;
+
+public class MappedHistoryTest {
+	/**
+	 * The number of entries to add so that the trimmed ones are compacted
+	 */
+	private static final int COMPACTED = 1100;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static List<String> read(File file) throws IOException {
+		return Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+	}
+
+	private static List<String> values(MappedHistory history) {
+		List<String> values = new ArrayList<>();
+		for (Entry entry : history)
+			values.add(entry.value().toString());
+		return values;
+	}
+
+	/**
+	 * Waits for the background thread to compact the file below a size.
+	 */
+	private static void awaitCompaction(File file, long length) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 10000;
+		while (file.length() >= length) {
+			if (System.currentTimeMillis() > deadline)
+				fail("The history file was not compacted.");
+			Thread.sleep(10);
+		}
+	}
+
+	@Test
+	public void readsTheEntriesOfAnExistingFile() throws IOException {
+		File file = folder.newFile();
+		// A file that FileHistory wrote on Windows, without a final line break.
+		Files.write(file.toPath(), "first\r\nsécond\nthird".getBytes(StandardCharsets.UTF_8));
+		try (MappedHistory history = new MappedHistory(file)) {
+			assertEquals(3, history.size());
+			assertEquals("first", history.get(0));
+			assertEquals("sécond", history.get(1));
+			assertEquals("third", history.get(2));
+			history.add("fourth");
+		}
+		assertEquals(4, read(file).size());
+		assertEquals("fourth", read(file).get(3));
+	}
+
+	@Test
+	public void addAppendsEachLineOnce() throws IOException {
+		File file = folder.newFile();
+		try (MappedHistory history = new MappedHistory(file)) {
+			history.add("a");
+			history.add("a");
+			history.add("b\nc");
+			history.add("a");
+			assertEquals(4, history.size());
+			assertEquals(4, history.index());
+			assertEquals("a", history.get(3));
+		}
+		try (MappedHistory history = new MappedHistory(file)) {
+			assertEquals(4, history.size());
+			assertEquals("c", history.get(2));
+		}
+	}
+
+	@Test
+	public void trimmingKeepsTheIndicesOfTheEntries() throws IOException {
+		File file = folder.newFile();
+		try (MappedHistory history = new MappedHistory(file)) {
+			history.setMaxSize(3);
+			for (int i = 0; i < 5; i++)
+				history.add("entry " + i);
+			assertEquals(3, history.size());
+			assertEquals(5, history.index());
+			assertEquals("entry 2", history.get(2));
+			assertEquals("entry 4", history.get(4));
+			try {
+				history.get(1);
+				fail();
+			} catch (IndexOutOfBoundsException e) {
+				// Trimmed.
+			}
+			ListIterator<Entry> entries = history.entries();
+			assertEquals(2, entries.next().index());
+			assertTrue(history.moveTo(3));
+			assertEquals("entry 3", history.current());
+			assertFalse(history.moveTo(1));
+		}
+		// The trimmed entries stay in the file until it is compacted.
+		assertEquals(5, read(file).size());
+	}
+
+	@Test
+	public void compactionDropsTrimmedEntriesAndShiftsTheIndex() throws IOException, InterruptedException {
+		File file = folder.newFile();
+		try (MappedHistory history = new MappedHistory(file)) {
+			history.setMaxSize(10);
+			for (int i = 0; i < COMPACTED; i++)
+				history.add("entry " + i);
+			awaitCompaction(file, COMPACTED * "entry 1000\n".length() / 2);
+
+			assertEquals(10, history.size());
+			assertEquals(COMPACTED, history.index());
+			for (int i = COMPACTED - 10; i < COMPACTED; i++)
+				assertEquals("entry " + i, history.get(i));
+			history.add("last");
+			assertEquals("last", history.get(COMPACTED));
+			assertEquals("entry " + (COMPACTED - 9), history.get(COMPACTED - 9));
+		}
+		List<String> lines = read(file);
+		assertTrue(lines.size() < COMPACTED / 2);
+		assertEquals("entry " + (COMPACTED - 9), lines.get(lines.size() - 10));
+		assertEquals("last", lines.get(lines.size() - 1));
+	}
+
+	@Test
+	public void compactionCopesWithEveryEntryTrimmed() throws IOException, InterruptedException {
+		File file = folder.newFile();
+		try (MappedHistory history = new MappedHistory(file)) {
+			history.setMaxSize(0);
+			for (int i = 0; i < COMPACTED; i++)
+				history.add("entry " + i);
+			assertEquals(0, history.size());
+			awaitCompaction(file, COMPACTED * "entry 1000\n".length() / 2);
+
+			history.setMaxSize(5);
+			history.add("kept");
+			assertEquals(1, history.size());
+			assertEquals("kept", history.get(COMPACTED));
+		}
+		List<String> lines = read(file);
+		assertEquals("kept", lines.get(lines.size() - 1));
+	}
+
+	@Test
+	public void changesRewriteTheFile() throws IOException {
+		File file = folder.newFile();
+		try (MappedHistory history = new MappedHistory(file)) {
+			history.setMaxSize(3);
+			for (int i = 0; i < 5; i++)
+				history.add("entry " + i);
+			history.set(3, "changed");
+			assertEquals("entry 2", history.removeFirst());
+			// Indices still count the trimmed entries.
+			assertEquals(2, history.size());
+			assertEquals("changed", history.get(2));
+			history.replace("replaced");
+			assertEquals("replaced", history.get(3));
+		}
+		try (MappedHistory history = new MappedHistory(file)) {
+			assertEquals(2, history.size());
+			assertEquals("changed", history.get(0));
+			assertEquals("replaced", history.get(1));
+			history.clear();
+			assertTrue(history.isEmpty());
+		}
+		assertEquals(0, file.length());
+	}
+
+	@Test
+	public void iteratingWalksBothWays() throws IOException {
+		try (MappedHistory history = new MappedHistory(folder.newFile())) {
+			history.add("a");
+			history.add("b");
+			history.add("c");
+			assertEquals("[a, b, c]", values(history).toString());
+			ListIterator<Entry> entries = history.entries(3);
+			assertEquals("c", entries.previous().value());
+			assertEquals("b", entries.previous().value());
+			assertEquals(1, entries.nextIndex());
+		}
+	}
+}
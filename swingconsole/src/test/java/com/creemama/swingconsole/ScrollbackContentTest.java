@@ -0,0 +1,116 @@
+package com.creemama.swingconsole;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Position;
+import javax.swing.text.Segment;
+
+import org.junit.Test;
+
+public class ScrollbackContentTest {
+	private static String repeat(char c, int count) {
+		StringBuilder sb = new StringBuilder(count);
+		for (int i = 0; i < count; i++)
+			sb.append(c);
+		return sb.toString();
+	}
+
+	private static String text(ScrollbackContent content) throws BadLocationException {
+		return content.getString(0, content.length());
+	}
+
+	@Test
+	public void evictingAndInsertingWrapsAroundTheBuffer() throws BadLocationException {
+		ScrollbackContent content = new ScrollbackContent();
+		content.insertString(0, repeat('a', 1000));
+		content.remove(0, 900);
+		// The buffer holds 1,024 characters, so these continue at its start.
+		content.insertString(content.length() - 1, repeat('b', 500));
+		String expected = repeat('a', 100) + repeat('b', 500) + "\n";
+		assertEquals(expected, text(content));
+
+		Segment segment = new Segment();
+		segment.setPartialReturn(true);
+		content.getChars(0, content.length(), segment);
+		assertTrue(segment.count < content.length());
+		assertEquals(expected.substring(0, segment.count), segment.toString());
+
+		assertEquals("ab", content.getString(99, 2));
+	}
+
+	@Test
+	public void editsMatchAStringBuilder() throws BadLocationException {
+		Random random = new Random(42);
+		ScrollbackContent content = new ScrollbackContent();
+		StringBuilder expected = new StringBuilder("\n");
+		for (int i = 0; i < 2000; i++) {
+			int length = expected.length();
+			switch (random.nextInt(4)) {
+			case 0:
+				int evict = random.nextInt(length);
+				content.remove(0, evict);
+				expected.delete(0, evict);
+				break;
+			case 1:
+				int where = random.nextInt(length);
+				int count = random.nextInt(length - where);
+				content.remove(where, count);
+				expected.delete(where, where + count);
+				break;
+			default:
+				where = random.nextInt(length);
+				String str = repeat((char) ('a' + random.nextInt(26)), random.nextInt(300));
+				content.insertString(where, str);
+				expected.insert(where, str);
+				break;
+			}
+			assertEquals(expected.toString(), text(content));
+		}
+	}
+
+	@Test
+	public void evictedPositionsStayAtTheStart() throws BadLocationException {
+		ScrollbackContent content = new ScrollbackContent();
+		content.insertString(0, "line1\nline2\nline3\n");
+		Position evicted = content.createPosition(3);
+		Position boundary = content.createPosition(6);
+		Position kept = content.createPosition(8);
+
+		content.remove(0, 6);
+		assertEquals(0, evicted.getOffset());
+		assertEquals(0, boundary.getOffset());
+		assertEquals(2, kept.getOffset());
+		assertEquals("line2\nline3\n\n", text(content));
+
+		content.insertString(0, "x");
+		assertEquals(0, evicted.getOffset());
+		assertEquals(0, boundary.getOffset());
+		assertEquals(3, kept.getOffset());
+	}
+
+	@Test
+	public void positionsFollowEditsAfterTheStart() throws BadLocationException {
+		ScrollbackContent content = new ScrollbackContent();
+		content.insertString(0, "hello world");
+		Position position = content.createPosition(6);
+
+		content.insertString(5, ", big");
+		assertEquals(11, position.getOffset());
+		assertEquals("w", content.getString(position.getOffset(), 1));
+
+		content.remove(2, 10);
+		assertEquals(2, position.getOffset());
+		assertEquals("heorld\n", text(content));
+	}
+
+	@Test(expected = BadLocationException.class)
+	public void removingTheFinalNewlineFails() throws BadLocationException {
+		ScrollbackContent content = new ScrollbackContent();
+		content.insertString(0, "text");
+		content.remove(0, content.length());
+	}
+}
@@ -0,0 +1,53 @@
+package com.creemama.swingconsole;
+
+import static org.junit.Assert.assertEquals;
+
+import javax.swing.text.BadLocationException;
+
+import org.junit.Test;
+
+public class ScrollbackDocumentTest {
+	private static ScrollbackDocument document(int lines, String format) throws BadLocationException {
+		ScrollbackDocument document = new ScrollbackDocument();
+		for (int i = 0; i < lines; i++)
+			document.insertString(document.getLength(), String.format(format, i), null);
+		return document;
+	}
+
+	@Test
+	public void trimEvictsAnExtraTenthOfTheLines() throws BadLocationException {
+		ScrollbackDocument document = document(20, "line %02d\n");
+		document.setMaxChars(0);
+		document.setMaxLines(10);
+
+		// 21 lines, counting the empty last one, are 11 too many, and a tenth of the
+		// limit more is evicted.
+		assertEquals(12 * 8, document.trim(document.getLength()));
+		assertEquals("line 12\n", document.getText(0, 8));
+		assertEquals(9, document.getDefaultRootElement().getElementCount());
+		assertEquals(0, document.trim(document.getLength()));
+	}
+
+	@Test
+	public void trimStopsAtTheLimit() throws BadLocationException {
+		ScrollbackDocument document = document(20, "line %02d\n");
+		document.setMaxChars(0);
+		document.setMaxLines(10);
+
+		int limit = document.getDefaultRootElement().getElement(5).getStartOffset();
+		assertEquals(limit, document.trim(limit));
+		assertEquals("line 05\n", document.getText(0, 8));
+	}
+
+	@Test
+	public void trimEvictsWholeLinesPastTheMaximumCharacters() throws BadLocationException {
+		ScrollbackDocument document = document(10, "%09d\n");
+		document.setMaxChars(50);
+
+		// 100 characters are 50 too many; with a tenth of the limit more, the 55th
+		// character is evicted, and with it the rest of its line.
+		assertEquals(60, document.trim(document.getLength()));
+		assertEquals("000000006\n", document.getText(0, 10));
+		assertEquals(40, document.getLength());
+	}
+}